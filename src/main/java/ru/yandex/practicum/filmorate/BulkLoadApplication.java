@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.mapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.repository.BulkLoadRepository;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+import ru.yandex.practicum.filmorate.service.BulkLoadService;
+
+/**
+ * Context of the offline bulk load: the data source and the loader's beans only, without the in-memory
+ * indexes, their startup listeners and the scheduled jobs of the web application.
+ */
+@EnableAutoConfiguration
+@Import({BulkLoadService.class, BulkLoadRepository.class, FilmRepository.class,
+        FilmRowMapper.class, GenreRowMapper.class, DirectorRowMapper.class})
+public class BulkLoadApplication {
+}
@@ -1,11 +1,22 @@
 package ru.yandex.practicum.filmorate;
 
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.util.Arrays;
+
+@EnableScheduling
 @SpringBootApplication
 public class FilmorateApplication {
     public static void main(String[] args) {
+        if (Arrays.stream(args).anyMatch(arg -> arg.startsWith("--filmorate.load="))) {
+            // bulk load runs in its own context without the web server and exits once it's done
+            SpringApplication loader = new SpringApplication(BulkLoadApplication.class);
+            loader.setWebApplicationType(WebApplicationType.NONE);
+            System.exit(SpringApplication.exit(loader.run(args)));
+        }
         SpringApplication.run(FilmorateApplication.class, args);
     }
 
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dto.RecommendationJobDTO;
+import ru.yandex.practicum.filmorate.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.index.TinyLfuCache;
+import ru.yandex.practicum.filmorate.service.EventRetentionService;
+import ru.yandex.practicum.filmorate.service.EventWriter;
+import ru.yandex.practicum.filmorate.service.FeedStreamService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationJobService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin")
+public class AdminController {
+
+    private final FilmService filmService;
+    private final RecommendationJobService recommendationJobService;
+    private final ReviewService reviewService;
+    private final ReferenceDataCache referenceData;
+    private final FeedStreamService feedStreamService;
+    private final EventRetentionService eventRetentionService;
+    private final EventWriter eventWriter;
+
+    @PostMapping("/films/rates/rebuild")
+    public Map<String, Integer> rebuildFilmRates() {
+        int rebuilt = filmService.rebuildRatingStats();
+        log.info("Successfully rebuild rating stats of {} films", rebuilt);
+        return Map.of("rebuilt", rebuilt);
+    }
+
+    @PostMapping("/reviews/useful/rebuild")
+    public Map<String, Integer> rebuildReviewUseful() {
+        int rebuilt = reviewService.rebuildUseful();
+        log.info("Successfully rebuild usefulness of {} reviews", rebuilt);
+        return Map.of("rebuilt", rebuilt);
+    }
+
+    @GetMapping("/films/cache/stats")
+    public TinyLfuCache.Stats getFilmCacheStats() {
+        return filmService.getFilmCacheStats();
+    }
+
+    @PostMapping("/recommendations/job")
+    public Map<String, Boolean> runRecommendationJob() {
+        boolean started = recommendationJobService.runAsync();
+        log.info("Recommendation job is requested, started={}", started);
+        return Map.of("started", started);
+    }
+
+    @GetMapping("/recommendations/job")
+    public RecommendationJobDTO getRecommendationJobStatus() {
+        return recommendationJobService.getStatus();
+    }
+
+    @GetMapping("/reference-data/stats")
+    public ReferenceDataCache.Stats getReferenceDataStats() {
+        return referenceData.getStats();
+    }
+
+    @PostMapping("/events/archive")
+    public Map<String, Integer> archiveEvents() {
+        int archived = eventRetentionService.archiveExpired();
+        log.info("Successfully archived {} events", archived);
+        return Map.of("archived", archived);
+    }
+
+    @GetMapping("/events/writer/stats")
+    public EventWriter.Stats getEventWriterStats() {
+        return eventWriter.getStats();
+    }
+
+    @GetMapping("/feed/stream/stats")
+    public Map<String, Integer> getFeedStreamStats() {
+        return Map.of("subscribers", feedStreamService.getSubscriberCount());
+    }
+}
@@ -2,11 +2,17 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.EventDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.service.EventService;
+import ru.yandex.practicum.filmorate.utils.JsonStreamWriter;
 
 import java.util.List;
 
@@ -17,9 +23,24 @@ import java.util.List;
 public class EventController {
 
     private final EventService eventService;
+    private final JsonStreamWriter jsonStreamWriter;
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamEvents() {
+        return jsonStreamWriter.stream(eventService::streamAllEvents, false);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamEventsAsNdjson() {
+        return jsonStreamWriter.stream(eventService::streamAllEvents, true);
+    }
 
     @GetMapping
-    public List<EventDTO> getEvents() {
-        return eventService.getAllEvents();
+    public ResponseEntity<List<EventDTO>> getEvents(@RequestParam(required = false) String after,
+                                                    @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(eventService.getAllEvents());
+        }
+        return eventService.getEventsPage(after, limit).toResponseEntity();
     }
 }
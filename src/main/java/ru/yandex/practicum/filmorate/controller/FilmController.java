@@ -3,10 +3,19 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.utils.JsonStreamReader;
+import ru.yandex.practicum.filmorate.utils.JsonStreamWriter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Slf4j
@@ -16,12 +25,32 @@ import java.util.List;
 public class FilmController {
 
     private final FilmService filmService;
+    private final JsonStreamWriter jsonStreamWriter;
+    private final JsonStreamReader jsonStreamReader;
 
     @GetMapping
-    public List<FilmDTO> getAllFilms() {
-        List<FilmDTO> films = filmService.getAllFilms();
-        log.info("Successfully get films");
-        return films;
+    public ResponseEntity<List<FilmDTO>> getAllFilms(@RequestParam(required = false) String after,
+                                                     @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            List<FilmDTO> films = filmService.getAllFilms();
+            log.info("Successfully get films");
+            return ResponseEntity.ok(films);
+        }
+        Page<FilmDTO> page = filmService.getFilmsPage(after, limit);
+        log.info("Successfully get page of {} films", page.items().size());
+        return page.toResponseEntity();
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        log.info("Streaming all films");
+        return jsonStreamWriter.stream(filmService::streamAllFilms, false);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllFilmsAsNdjson() {
+        log.info("Streaming all films as NDJSON");
+        return jsonStreamWriter.stream(filmService::streamAllFilms, true);
     }
 
     @GetMapping("/{id}")
@@ -45,6 +74,13 @@ public class FilmController {
         return addedFilm;
     }
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BatchResult addFilms(InputStream body) throws IOException {
+        BatchResult result = filmService.addFilms(jsonStreamReader.read(body, FilmDTO.class));
+        log.info("Successfully add {} films, {} failed", result.created(), result.errors().size());
+        return result;
+    }
+
     @PutMapping("/{id}/like/{userId}")
     public void addFilmLike(@PathVariable long id, @PathVariable long userId) {
         filmService.addFilmLike(id, userId, null);
@@ -2,7 +2,9 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.dto.ReviewDTO;
 import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.ReviewService;
@@ -45,8 +47,15 @@ public class ReviewController {
     }
 
     @GetMapping
-    public List<ReviewDTO> getReviewsByParams(@RequestParam(required = false) Long filmId,
-                                              @RequestParam(required = false) Integer count) {
+    public ResponseEntity<List<ReviewDTO>> getReviewsByParams(@RequestParam(required = false) Long filmId,
+                                                              @RequestParam(required = false) Integer count,
+                                                              @RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) Integer limit) {
+        if (after != null || limit != null) {
+            Page<ReviewDTO> page = service.getReviewsPage(filmId, after, limit);
+            log.info("Successfully get page of {} reviews", page.items().size());
+            return page.toResponseEntity();
+        }
         List<ReviewDTO> response;
         if (filmId == null) {
             response = service.getAllReviews();
@@ -58,7 +67,7 @@ public class ReviewController {
             response = service.getReviewsByFilmId(filmId, count);
             log.info("Successfully get {} reviews of film with id={}", response.size(), filmId);
         }
-        return response;
+        return ResponseEntity.ok(response);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -3,14 +3,23 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
 import ru.yandex.practicum.filmorate.dto.EventDTO;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.EventService;
+import ru.yandex.practicum.filmorate.service.FeedStreamService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.utils.JsonStreamReader;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Slf4j
@@ -21,13 +30,21 @@ public class UserController {
 
     private final UserService userService;
     private final EventService eventService;
+    private final FeedStreamService feedStreamService;
     private final FilmService filmService;
+    private final JsonStreamReader jsonStreamReader;
 
     @GetMapping
-    public List<User> getUsers() {
-        List<User> users = userService.getAllUsers();
-        log.info("Successfully get users");
-        return users;
+    public ResponseEntity<List<User>> getUsers(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            List<User> users = userService.getAllUsers();
+            log.info("Successfully get users");
+            return ResponseEntity.ok(users);
+        }
+        Page<User> page = userService.getUsersPage(after, limit);
+        log.info("Successfully get page of {} users", page.items().size());
+        return page.toResponseEntity();
     }
 
     @PutMapping
@@ -44,6 +61,13 @@ public class UserController {
         return addedUser;
     }
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BatchResult addUsers(InputStream body) throws IOException {
+        BatchResult result = userService.addUsers(jsonStreamReader.read(body, User.class));
+        log.info("Successfully add {} users, {} failed", result.created(), result.errors().size());
+        return result;
+    }
+
     @PutMapping("/{id}/friends/{friendId}")
     public void addFriend(@PathVariable long id, @PathVariable long friendId) {
         userService.addFriend(id, friendId);
@@ -64,9 +88,44 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable long id,
+                                           @RequestParam(defaultValue = "10", required = false) int count) {
+        List<User> suggestions = userService.getFriendSuggestions(id, count);
+        log.info("Successfully get {} friend suggestions for user id={}", suggestions.size(), id);
+        return suggestions;
+    }
+
+    @GetMapping("/{id}/path/{otherId}")
+    public List<User> getPath(@PathVariable long id, @PathVariable long otherId,
+                              @RequestParam(defaultValue = "6", required = false) int maxDepth) {
+        List<User> path = userService.getPath(id, otherId, maxDepth);
+        log.info("Found path of {} users from user id={} to user id={}", path.size(), id, otherId);
+        return path;
+    }
+
     @GetMapping("/{id}/feed")
-    public List<EventDTO> getFeedByUserId(@PathVariable long id) {
-        return eventService.getUserFeed(id);
+    public List<EventDTO> getFeedByUserId(@PathVariable long id,
+                                          @RequestParam(required = false) Long afterEventId,
+                                          @RequestParam(required = false) Integer limit) {
+        if (afterEventId == null && limit == null) {
+            return eventService.getUserFeed(id);
+        }
+        return eventService.getUserFeed(id, afterEventId, limit);
+    }
+
+    @GetMapping("/{id}/timeline")
+    public List<EventDTO> getTimelineByUserId(@PathVariable long id,
+                                              @RequestParam(required = false) Long beforeEventId,
+                                              @RequestParam(required = false) Integer limit) {
+        return eventService.getFriendsTimeline(id, beforeEventId, limit);
+    }
+
+    @GetMapping(path = "/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFeedByUserId(@PathVariable long id,
+                                         @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        log.info("Subscribing to feed of user id={} after event id={}", id, lastEventId);
+        return feedStreamService.subscribe(id, lastEventId);
     }
 
     @GetMapping("/{id}/recommendations")
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch import: ids of the created items in input order, null for the failed ones, and
+ * an error for every failed item.
+ */
+public record BatchResult(int created, List<Long> ids, List<ItemError> errors) {
+
+    public record ItemError(int index, String message) {
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.utils.PageCursor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One keyset page of a list endpoint. The items are returned as the response body and the cursor
+ * of the next page, if there may be one, in the {@value #NEXT_CURSOR_HEADER} header.
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_SIZE = 100;
+    public static final int MAX_SIZE = 1000;
+
+    public static int size(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_SIZE) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_SIZE);
+        }
+        return limit;
+    }
+
+    public static <T> Page<T> of(List<T> items, int size, Function<T, PageCursor> cursorOf) {
+        String nextCursor = items.size() < size ? null : cursorOf.apply(items.get(items.size() - 1)).encode();
+        return new Page<>(items, nextCursor);
+    }
+
+    public ResponseEntity<List<T>> toResponseEntity() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+import ru.yandex.practicum.filmorate.repository.ReviewRepository;
+import ru.yandex.practicum.filmorate.repository.UserRepository;
+
+/**
+ * Ids of every existing user, film and review, so that validation answers from memory. Services keep it
+ * in step with their inserts and deletes; reviews removed by cascade are dropped by whoever deletes
+ * their user or film.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EntityIdIndex {
+    private final UserRepository userRepository;
+    private final FilmRepository filmRepository;
+    private final ReviewRepository reviewRepository;
+
+    private final IdBitmap users = new IdBitmap();
+    private final IdBitmap deletedUsers = new IdBitmap();
+    private final IdBitmap films = new IdBitmap();
+    private final IdBitmap reviews = new IdBitmap();
+
+    @PostConstruct
+    public void rebuild() {
+        reload(users, () -> userRepository.forEachId(users::add));
+        reload(deletedUsers, () -> userRepository.forEachDeletedId(deletedUsers::add));
+        reload(films, () -> filmRepository.forEachId(films::add));
+        reload(reviews, () -> reviewRepository.forEachId(reviews::add));
+        log.info("Entity id index is built");
+    }
+
+    public IdBitmap users() {
+        return users;
+    }
+
+    public IdBitmap deletedUsers() {
+        return deletedUsers;
+    }
+
+    public IdBitmap films() {
+        return films;
+    }
+
+    public IdBitmap reviews() {
+        return reviews;
+    }
+
+    private static void reload(IdBitmap bitmap, Runnable loader) {
+        bitmap.clear();
+        loader.run();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
+
+import java.util.Collection;
+import java.util.function.LongFunction;
+
+/**
+ * Assembled films by id, bounded by their estimated size in bytes. Cached films are shared between
+ * callers, so they must not be modified.
+ */
+@Component
+public class FilmDtoCache {
+    private static final int FILM_OVERHEAD_BYTES = 200;
+    private static final int REFERENCE_OVERHEAD_BYTES = 48;
+    private static final int AVERAGE_FILM_BYTES = 1024;
+
+    @Value("${filmorate.films.cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    private TinyLfuCache<Long, FilmDTO> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new TinyLfuCache<>(maxBytes, (int) Math.min(Integer.MAX_VALUE, maxBytes / AVERAGE_FILM_BYTES),
+                FilmDtoCache::estimateBytes);
+    }
+
+    public FilmDTO get(long filmId, LongFunction<FilmDTO> loader) {
+        return cache.get(filmId, loader::apply);
+    }
+
+    public void invalidate(long filmId) {
+        cache.invalidate(filmId);
+    }
+
+    public void invalidateAll(Collection<Long> filmIds) {
+        cache.invalidateAll(filmIds);
+    }
+
+    public void invalidateByDirector(int directorId) {
+        cache.invalidateIf(film -> film.getDirectors() != null && film.getDirectors().stream()
+                .anyMatch(director -> director.getId() == directorId));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public TinyLfuCache.Stats getStats() {
+        return cache.getStats();
+    }
+
+    static int estimateBytes(FilmDTO film) {
+        long bytes = FILM_OVERHEAD_BYTES + stringBytes(film.getName()) + stringBytes(film.getDescription());
+        // genres, MPA and directors are shared with the reference data cache, so only references are counted
+        bytes += (long) REFERENCE_OVERHEAD_BYTES * (size(film.getGenres()) + size(film.getDirectors()));
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static int size(Collection<?> values) {
+        return values == null ? 0 : values.size();
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+}
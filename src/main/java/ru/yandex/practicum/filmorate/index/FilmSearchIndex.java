@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.repository.DirectorRepository;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+import ru.yandex.practicum.filmorate.utils.SearchBy;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Case-insensitive substring search over film titles and director names, kept in memory and updated
+ * together with films and directors.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    private final FilmRepository filmRepository;
+    private final DirectorRepository directorRepository;
+
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex directorNames = new TrigramIndex();
+    private final Map<Integer, Set<Long>> filmsByDirector = new HashMap<>();
+    private final Map<Long, List<Integer>> directorsByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void rebuild() {
+        List<Film> films = filmRepository.findAll();
+        List<Director> directors = directorRepository.findAll();
+        Map<Long, List<Integer>> directorIds = filmRepository.findAllDirectorIds();
+
+        lock.writeLock().lock();
+        try {
+            films.forEach(film -> titles.put(film.getId(), film.getName()));
+            directors.forEach(director -> directorNames.put(director.getId(), director.getName()));
+            directorIds.forEach(this::link);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index is built for {} films and {} directors", films.size(), directors.size());
+    }
+
+    public Set<Long> search(String query, SearchBy searchBy) {
+        lock.readLock().lock();
+        try {
+            if (searchBy == SearchBy.TITLE) {
+                return new HashSet<>(titles.search(query));
+            }
+            Set<Long> filmIds = new HashSet<>();
+            for (long directorId : directorNames.search(query)) {
+                filmIds.addAll(filmsByDirector.getOrDefault((int) directorId, Set.of()));
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putFilm(long filmId, String name, List<Integer> directorIds) {
+        lock.writeLock().lock();
+        try {
+            titles.put(filmId, name);
+            unlink(filmId);
+            link(filmId, directorIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            titles.remove(filmId);
+            unlink(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putDirector(int directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            directorNames.put(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            directorNames.remove(directorId);
+            Set<Long> filmIds = filmsByDirector.remove(directorId);
+            if (filmIds != null) {
+                filmIds.forEach(filmId -> directorsByFilm.get(filmId).remove(Integer.valueOf(directorId)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addFilmDirector(long filmId, int directorId) {
+        lock.writeLock().lock();
+        try {
+            link(filmId, List.of(directorId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(long filmId, List<Integer> directorIds) {
+        List<Integer> linked = directorsByFilm.computeIfAbsent(filmId, id -> new ArrayList<>());
+        for (int directorId : directorIds) {
+            if (filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId)) {
+                linked.add(directorId);
+            }
+        }
+    }
+
+    private void unlink(long filmId) {
+        List<Integer> directorIds = directorsByFilm.remove(filmId);
+        if (directorIds == null) {
+            return;
+        }
+        for (int directorId : directorIds) {
+            Set<Long> filmIds = filmsByDirector.get(directorId);
+            filmIds.remove(filmId);
+            if (filmIds.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.index;
+
+/**
+ * Count-min sketch of 4-bit counters estimating how often a key was seen recently. All counters are
+ * halved once the number of recorded events reaches ten times the width, so old popularity fades out.
+ * Not thread-safe.
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int events;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+        this.counters = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    void increment(Object key) {
+        int hash = key.hashCode();
+        boolean incremented = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+                incremented = true;
+            }
+        }
+        if (incremented && ++events == sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row][indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+        long spread = (hash + SEEDS[row]) * SEEDS[row];
+        spread ^= spread >>> 32;
+        return (int) spread & mask;
+    }
+
+    private void reset() {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        events /= 2;
+    }
+}
@@ -0,0 +1,380 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.repository.UserRepository;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Friendships as adjacency segments indexed by user id: a sorted int array of friends per user and,
+ * for the reverse direction, of users who added them as a friend. A segment is never modified in
+ * place, a change publishes a new one into its slot, so readers don't take locks. The slot arrays are
+ * replaced only when they have to grow.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendGraph {
+    private static final int[] EMPTY = new int[0];
+    // each idle search holds arrays sized by the user count, so only a few are kept between calls
+    private static final int MAX_IDLE_SEARCHES = 4;
+
+    private final UserRepository userRepository;
+
+    private volatile AtomicReferenceArray<int[]> friends = new AtomicReferenceArray<>(0);
+    private volatile AtomicReferenceArray<int[]> followers = new AtomicReferenceArray<>(0);
+
+    private final Queue<PathSearch> idleSearches = new ArrayBlockingQueue<>(MAX_IDLE_SEARCHES);
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        EdgeList edges = new EdgeList();
+        userRepository.forEachFriendship(edges::add);
+
+        friends = new AtomicReferenceArray<>(edges.toSegments(edges.from, edges.to));
+        followers = new AtomicReferenceArray<>(edges.toSegments(edges.to, edges.from));
+        log.info("Friend graph is built from {} friendships", edges.size);
+    }
+
+    public List<Long> getFriendIds(long userId) {
+        int[] ids = segment(friends, userId);
+        return toIds(ids, ids.length);
+    }
+
+    /**
+     * Sorted ids of the user's friends. The returned segment is shared and must not be modified.
+     */
+    int[] friendsOf(long userId) {
+        return segment(friends, userId);
+    }
+
+    /**
+     * Sorted ids of users who added the user as a friend. The returned segment is shared and must not be modified.
+     */
+    int[] followersOf(long userId) {
+        return segment(followers, userId);
+    }
+
+    public List<Long> getCommonFriendIds(long userId, long otherId) {
+        int[] first = segment(friends, userId);
+        int[] second = segment(friends, otherId);
+        int[] common = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return toIds(common, size);
+    }
+
+    /**
+     * Friends of friends the user hasn't added yet, by the number of friends who added them, then by id.
+     */
+    public List<Long> getSuggestions(long userId, int count) {
+        AtomicReferenceArray<int[]> segments = friends;
+        int[] own = segment(segments, userId);
+        Map<Integer, Integer> mutualCounts = new HashMap<>();
+        for (int friendId : own) {
+            for (int candidateId : segment(segments, friendId)) {
+                if (candidateId != userId && Arrays.binarySearch(own, candidateId) < 0) {
+                    mutualCounts.merge(candidateId, 1, Integer::sum);
+                }
+            }
+        }
+        return mutualCounts.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(entry -> (long) entry.getKey())
+                .toList();
+    }
+
+    /**
+     * Shortest chain of friendships leading from one user to another, both included, with at most
+     * {@code maxDepth} links. Searches forward over friends and backward over followers, each time
+     * expanding the smaller frontier by a whole level. Empty if there is no such chain.
+     */
+    public List<Long> findPath(long fromId, long toId, int maxDepth) {
+        if (fromId == toId) {
+            return List.of(fromId);
+        }
+        AtomicReferenceArray<int[]> forwardSegments = friends;
+        AtomicReferenceArray<int[]> backwardSegments = followers;
+        int capacity = Math.max(forwardSegments.length(), backwardSegments.length());
+        if (fromId >= capacity || toId >= capacity || fromId < 0 || toId < 0) {
+            return List.of();
+        }
+
+        PathSearch search = idleSearches.poll();
+        if (search == null) {
+            search = new PathSearch();
+        }
+        try {
+            search.start(capacity, (int) fromId, (int) toId);
+            int meeting = -1;
+            while (meeting < 0 && search.forward.depth + search.backward.depth < maxDepth
+                   && !search.forward.isExhausted() && !search.backward.isExhausted()) {
+                meeting = search.forward.frontierSize() <= search.backward.frontierSize()
+                        ? search.forward.expand(forwardSegments, search.backward, search.epoch)
+                        : search.backward.expand(backwardSegments, search.forward, search.epoch);
+            }
+            return meeting < 0 ? List.of() : search.path(meeting);
+        } finally {
+            idleSearches.offer(search);
+        }
+    }
+
+    public synchronized void addFriend(long userId, long friendId) {
+        int user = Math.toIntExact(userId);
+        int friend = Math.toIntExact(friendId);
+        int capacity = Math.max(user, friend) + 1;
+        if (capacity > friends.length()) {
+            friends = withCapacity(friends, capacity);
+        }
+        if (capacity > followers.length()) {
+            followers = withCapacity(followers, capacity);
+        }
+        friends.set(user, with(friends.get(user), friend));
+        followers.set(friend, with(followers.get(friend), user));
+    }
+
+    public synchronized void removeFriend(long userId, long friendId) {
+        int user = Math.toIntExact(userId);
+        int friend = Math.toIntExact(friendId);
+        if (user >= friends.length() || friend >= followers.length()) {
+            return;
+        }
+        friends.set(user, without(friends.get(user), friend));
+        followers.set(friend, without(followers.get(friend), user));
+    }
+
+    public synchronized void removeUser(long userId) {
+        int user = Math.toIntExact(userId);
+        for (int friend : segment(friends, user)) {
+            followers.set(friend, without(followers.get(friend), user));
+        }
+        for (int follower : segment(followers, user)) {
+            friends.set(follower, without(friends.get(follower), user));
+        }
+        if (user < friends.length()) {
+            friends.set(user, null);
+        }
+        if (user < followers.length()) {
+            followers.set(user, null);
+        }
+    }
+
+    /**
+     * Copies the slots into a larger array. Called under the lock, so no slot changes while copying.
+     */
+    private static AtomicReferenceArray<int[]> withCapacity(AtomicReferenceArray<int[]> segments, int capacity) {
+        AtomicReferenceArray<int[]> grown =
+                new AtomicReferenceArray<>(Math.max(capacity, segments.length() * 2));
+        for (int i = 0; i < segments.length(); i++) {
+            grown.set(i, segments.get(i));
+        }
+        return grown;
+    }
+
+    private static List<Long> toIds(int[] ids, int size) {
+        List<Long> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add((long) ids[i]);
+        }
+        return result;
+    }
+
+    private static int[] segment(AtomicReferenceArray<int[]> segments, long userId) {
+        if (userId < 0 || userId >= segments.length()) {
+            return EMPTY;
+        }
+        int[] segment = segments.get((int) userId);
+        return segment == null ? EMPTY : segment;
+    }
+
+    private static final class EdgeList {
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private int size;
+        private int maxId;
+
+        void add(int userId, int friendId) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+            }
+            from[size] = userId;
+            to[size] = friendId;
+            size++;
+            maxId = Math.max(maxId, Math.max(userId, friendId));
+        }
+
+        int[][] toSegments(int[] owners, int[] targets) {
+            int[] degrees = new int[maxId + 1];
+            for (int i = 0; i < size; i++) {
+                degrees[owners[i]]++;
+            }
+            int[][] segments = new int[maxId + 1][];
+            for (int id = 0; id <= maxId; id++) {
+                if (degrees[id] > 0) {
+                    segments[id] = new int[degrees[id]];
+                    degrees[id] = 0;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                segments[owners[i]][degrees[owners[i]]++] = targets[i];
+            }
+            for (int[] segment : segments) {
+                if (segment != null) {
+                    Arrays.sort(segment);
+                }
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Reusable state of one search. A node counts as visited when its stamp equals the current epoch,
+     * so arrays are not cleared or reallocated between searches.
+     */
+    private static final class PathSearch {
+        private final Side forward = new Side();
+        private final Side backward = new Side();
+        private int epoch;
+
+        void start(int capacity, int fromId, int toId) {
+            forward.ensureCapacity(capacity);
+            backward.ensureCapacity(capacity);
+            if (++epoch == Integer.MAX_VALUE) {
+                forward.clear();
+                backward.clear();
+                epoch = 1;
+            }
+            forward.start(fromId, epoch);
+            backward.start(toId, epoch);
+        }
+
+        List<Long> path(int meeting) {
+            LinkedList<Long> path = new LinkedList<>();
+            for (int node = meeting; node >= 0; node = forward.parents[node]) {
+                path.addFirst((long) node);
+            }
+            for (int node = backward.parents[meeting]; node >= 0; node = backward.parents[node]) {
+                path.addLast((long) node);
+            }
+            return new ArrayList<>(path);
+        }
+    }
+
+    private static final class Side {
+        private int[] stamps = new int[0];
+        private int[] parents = new int[0];
+        private int[] queue = new int[0];
+        private int levelStart;
+        private int levelEnd;
+        private int depth;
+
+        void ensureCapacity(int capacity) {
+            if (stamps.length < capacity) {
+                stamps = Arrays.copyOf(stamps, capacity);
+                parents = new int[capacity];
+                queue = new int[capacity];
+            }
+        }
+
+        void clear() {
+            Arrays.fill(stamps, 0);
+        }
+
+        void start(int node, int epoch) {
+            stamps[node] = epoch;
+            parents[node] = -1;
+            queue[0] = node;
+            levelStart = 0;
+            levelEnd = 1;
+            depth = 0;
+        }
+
+        boolean isExhausted() {
+            return levelStart == levelEnd;
+        }
+
+        int frontierSize() {
+            return levelEnd - levelStart;
+        }
+
+        /**
+         * Visits the next level and returns the first node already reached by the other side, or -1.
+         */
+        int expand(AtomicReferenceArray<int[]> segments, Side other, int epoch) {
+            int tail = levelEnd;
+            for (int i = levelStart; i < levelEnd; i++) {
+                int node = queue[i];
+                int[] segment = node < segments.length() ? segments.get(node) : null;
+                if (segment == null) {
+                    continue;
+                }
+                for (int next : segment) {
+                    if (next >= stamps.length || stamps[next] == epoch) {
+                        continue;
+                    }
+                    stamps[next] = epoch;
+                    parents[next] = node;
+                    if (other.stamps[next] == epoch) {
+                        return next;
+                    }
+                    queue[tail++] = next;
+                }
+            }
+            levelStart = levelEnd;
+            levelEnd = tail;
+            depth++;
+            return -1;
+        }
+    }
+
+    private static int[] with(int[] ids, int id) {
+        if (ids == null) {
+            return new int[]{id};
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertAt = -position - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    private static int[] without(int[] ids, int id) {
+        if (ids == null) {
+            return null;
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+}
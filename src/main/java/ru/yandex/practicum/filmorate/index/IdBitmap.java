@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of non-negative ids as a bitmap that grows with the largest id. Lookups take no lock;
+ * writers are serialized so that growing never loses a concurrent write.
+ */
+public class IdBitmap {
+    private static final int INITIAL_WORDS = 16;
+
+    private volatile AtomicLongArray words = new AtomicLongArray(INITIAL_WORDS);
+
+    public boolean contains(long id) {
+        if (id < 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        long word = id >>> 6;
+        return word < current.length() && (current.get((int) word) & (1L << id)) != 0;
+    }
+
+    /**
+     * Returns the first of the ids that is not in the set, or empty if all of them are.
+     */
+    public OptionalLong findMissing(long... ids) {
+        for (long id : ids) {
+            if (!contains(id)) {
+                return OptionalLong.of(id);
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    public synchronized void add(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id must not be negative: " + id);
+        }
+        int word = (int) (id >>> 6);
+        AtomicLongArray current = words;
+        if (word >= current.length()) {
+            current = grow(current, word + 1);
+            words = current;
+        }
+        current.set(word, current.get(word) | (1L << id));
+    }
+
+    public synchronized void remove(long id) {
+        AtomicLongArray current = words;
+        long word = id >>> 6;
+        if (id >= 0 && word < current.length()) {
+            current.set((int) word, current.get((int) word) & ~(1L << id));
+        }
+    }
+
+    public synchronized void clear() {
+        words = new AtomicLongArray(INITIAL_WORDS);
+    }
+
+    private static AtomicLongArray grow(AtomicLongArray current, int minWords) {
+        AtomicLongArray grown = new AtomicLongArray(Math.max(minWords, current.length() * 2));
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        return grown;
+    }
+}
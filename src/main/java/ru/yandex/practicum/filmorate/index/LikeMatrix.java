@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * User-film like matrix kept as sorted id arrays in both directions. Recommendations take the users
+ * most similar to the given one by Jaccard index of their likes and rank the films they liked and the
+ * user didn't by the summed similarity of the users who liked them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeMatrix {
+    private static final long[] EMPTY = new long[0];
+
+    private final FilmRepository filmRepository;
+
+    @Value("${filmorate.recommendations.neighbours:20}")
+    private int neighbours;
+
+    private final Map<Long, long[]> filmsByUser = new HashMap<>();
+    private final Map<Long, long[]> usersByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, List<Long>> likedFilmIds = filmRepository.findAllLikedFilmIds();
+
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            Map<Long, List<Long>> likerIds = new HashMap<>();
+            likedFilmIds.forEach((userId, filmIds) -> {
+                filmsByUser.put(userId, toSortedArray(filmIds));
+                filmIds.forEach(filmId -> likerIds.computeIfAbsent(filmId, id -> new ArrayList<>()).add(userId));
+            });
+            likerIds.forEach((filmId, userIds) -> usersByFilm.put(filmId, toSortedArray(userIds)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Like matrix is built for {} users and {} films", filmsByUser.size(), usersByFilm.size());
+    }
+
+    public List<Long> recommend(long userId) {
+        lock.readLock().lock();
+        try {
+            long[] liked = filmsByUser.getOrDefault(userId, EMPTY);
+            if (liked.length == 0) {
+                return List.of();
+            }
+
+            Map<Long, Integer> overlaps = new HashMap<>();
+            for (long filmId : liked) {
+                for (long otherId : usersByFilm.getOrDefault(filmId, EMPTY)) {
+                    if (otherId != userId) {
+                        overlaps.merge(otherId, 1, Integer::sum);
+                    }
+                }
+            }
+
+            List<Neighbour> candidates = new ArrayList<>(overlaps.size());
+            overlaps.forEach((otherId, overlap) -> {
+                int otherSize = filmsByUser.get(otherId).length;
+                if (otherSize > overlap) {
+                    double similarity = (double) overlap / (liked.length + otherSize - overlap);
+                    candidates.add(new Neighbour(otherId, similarity));
+                }
+            });
+            candidates.sort(Comparator.comparingDouble(Neighbour::similarity).reversed()
+                    .thenComparingLong(Neighbour::userId));
+
+            Map<Long, Double> scores = new HashMap<>();
+            for (Neighbour neighbour : candidates.subList(0, Math.min(neighbours, candidates.size()))) {
+                for (long filmId : filmsByUser.get(neighbour.userId())) {
+                    if (Arrays.binarySearch(liked, filmId) < 0) {
+                        scores.merge(filmId, neighbour.similarity(), Double::sum);
+                    }
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addLike(long userId, long filmId) {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.put(userId, with(filmsByUser.get(userId), filmId));
+            usersByFilm.put(filmId, with(usersByFilm.get(filmId), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeLike(long userId, long filmId) {
+        lock.writeLock().lock();
+        try {
+            putOrRemove(filmsByUser, userId, without(filmsByUser.get(userId), filmId));
+            putOrRemove(usersByFilm, filmId, without(usersByFilm.get(filmId), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            for (long filmId : filmsByUser.getOrDefault(userId, EMPTY)) {
+                putOrRemove(usersByFilm, filmId, without(usersByFilm.get(filmId), userId));
+            }
+            filmsByUser.remove(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            for (long userId : usersByFilm.getOrDefault(filmId, EMPTY)) {
+                putOrRemove(filmsByUser, userId, without(filmsByUser.get(userId), filmId));
+            }
+            usersByFilm.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void putOrRemove(Map<Long, long[]> ids, long key, long[] value) {
+        if (value.length == 0) {
+            ids.remove(key);
+        } else {
+            ids.put(key, value);
+        }
+    }
+
+    private static long[] toSortedArray(Collection<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+
+    private static long[] with(long[] ids, long id) {
+        if (ids == null) {
+            return new long[]{id};
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertAt = -position - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        if (ids == null) {
+            return EMPTY;
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    private record Neighbour(long userId, double similarity) {
+    }
+}
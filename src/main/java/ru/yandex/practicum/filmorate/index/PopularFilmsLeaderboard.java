@@ -0,0 +1,317 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Bounded top-K of films by rate for every (genre, year) bucket, including "any genre" and "any year".
+ * A bucket keeps only its best K films, so when a film leaves the top and others exist outside of it,
+ * the bucket is reloaded from the database on the next read. A read that finds the bucket changed
+ * while it was being reloaded gets nothing, and the caller falls back to the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularFilmsLeaderboard {
+    private static final int ANY = 0;
+    private static final int RATE_LOCK_BITS = 6;
+    private static final Comparator<RankedFilm> BY_RATE = Comparator
+            .comparing(RankedFilm::rate, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparingLong(RankedFilm::filmId);
+
+    private final FilmRepository filmRepository;
+
+    @Value("${filmorate.popular.leaderboard-size:100}")
+    private int capacity;
+
+    private final Map<Long, FilmPlacement> films = new HashMap<>();
+    private final Map<BucketKey, Bucket> buckets = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] rateLocks = Stream.generate(ReentrantLock::new)
+            .limit(1 << RATE_LOCK_BITS)
+            .toArray(ReentrantLock[]::new);
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, Double> rates = filmRepository.findAllRates();
+        Map<Long, List<Integer>> genreIds = filmRepository.findAllGenreIds();
+        List<Film> allFilms = filmRepository.findAll();
+
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            buckets.clear();
+            for (Film film : allFilms) {
+                FilmPlacement placement = new FilmPlacement(
+                        film.getReleaseDate().getYear(),
+                        genreIds.getOrDefault(film.getId(), List.of()),
+                        rates.get(film.getId()));
+                place(film.getId(), placement);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Popular films leaderboard is built for {} films in {} buckets", allFilms.size(), buckets.size());
+    }
+
+    /**
+     * Returns ids of the best films for the bucket, or empty if count exceeds what the leaderboard keeps
+     * or the bucket changed while it was being reloaded.
+     */
+    public Optional<List<Long>> getTop(Integer genreId, Integer year, int count) {
+        if (count > capacity) {
+            return Optional.empty();
+        }
+        BucketKey key = new BucketKey(genreId == null ? ANY : genreId, year == null ? ANY : year);
+
+        Bucket bucket;
+        long version;
+        lock.readLock().lock();
+        try {
+            bucket = buckets.get(key);
+            if (bucket == null) {
+                return Optional.of(List.of());
+            }
+            if (bucket.complete) {
+                return Optional.of(bucket.topIds(count));
+            }
+            version = bucket.version;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // queried without the lock, so the result is taken only if the bucket didn't change meanwhile
+        List<Film> popular = filmRepository.getPopularFilms(genreId, year, capacity);
+
+        lock.writeLock().lock();
+        try {
+            if (buckets.get(key) != bucket) {
+                return Optional.empty();
+            }
+            if (!bucket.complete) {
+                if (bucket.version != version) {
+                    return Optional.empty();
+                }
+                reload(key, bucket, popular);
+            }
+            return Optional.of(bucket.topIds(count));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Orders the given films the same way as the leaderboard does: by rate, films without marks last.
+     */
+    public List<Long> rank(Collection<Long> filmIds) {
+        List<RankedFilm> ranked = new ArrayList<>(filmIds.size());
+        lock.readLock().lock();
+        try {
+            for (long filmId : filmIds) {
+                FilmPlacement placement = films.get(filmId);
+                ranked.add(new RankedFilm(filmId, placement == null ? null : placement.rate()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        ranked.sort(BY_RATE);
+        return ranked.stream().map(RankedFilm::filmId).toList();
+    }
+
+    public void addFilm(long filmId, int year, List<Integer> genreIds) {
+        lock.writeLock().lock();
+        try {
+            place(filmId, new FilmPlacement(year, genreIds, null));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateFilm(long filmId, int year, List<Integer> genreIds) {
+        lock.writeLock().lock();
+        try {
+            FilmPlacement old = unplace(filmId);
+            place(filmId, new FilmPlacement(year, genreIds, old == null ? null : old.rate()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            unplace(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateRates(Map<Long, Double> rates) {
+        lock.writeLock().lock();
+        try {
+            rates.forEach(this::rerate);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the current rate of the film and applies it. Refreshes of the same film run one at a time,
+     * so a rate read before a later like can't replace the rate read after it.
+     */
+    public void refreshRate(long filmId, LongFunction<Double> rates) {
+        ReentrantLock rateLock = rateLocks[(int) (filmId * 0x9E3779B97F4A7C15L >>> (Long.SIZE - RATE_LOCK_BITS))];
+        rateLock.lock();
+        try {
+            Double rate = rates.apply(filmId);
+            lock.writeLock().lock();
+            try {
+                rerate(filmId, rate);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            rateLock.unlock();
+        }
+    }
+
+    private void rerate(long filmId, Double rate) {
+        FilmPlacement placement = films.get(filmId);
+        if (placement == null || Objects.equals(placement.rate(), rate)) {
+            return;
+        }
+        RankedFilm before = new RankedFilm(filmId, placement.rate());
+        RankedFilm after = new RankedFilm(filmId, rate);
+        films.put(filmId, placement.withRate(rate));
+        for (BucketKey key : placement.bucketKeys()) {
+            buckets.get(key).replace(before, after);
+        }
+    }
+
+    private void place(long filmId, FilmPlacement placement) {
+        films.put(filmId, placement);
+        RankedFilm ranked = new RankedFilm(filmId, placement.rate());
+        for (BucketKey key : placement.bucketKeys()) {
+            buckets.computeIfAbsent(key, k -> new Bucket(capacity)).add(ranked);
+        }
+    }
+
+    private FilmPlacement unplace(long filmId) {
+        FilmPlacement placement = films.remove(filmId);
+        if (placement == null) {
+            return null;
+        }
+        RankedFilm ranked = new RankedFilm(filmId, placement.rate());
+        for (BucketKey key : placement.bucketKeys()) {
+            buckets.get(key).remove(ranked);
+        }
+        return placement;
+    }
+
+    private void reload(BucketKey key, Bucket bucket, List<Film> popular) {
+        bucket.top.clear();
+        for (Film film : popular) {
+            FilmPlacement placement = films.get(film.getId());
+            if (placement != null) {
+                bucket.top.add(new RankedFilm(film.getId(), placement.rate()));
+            }
+        }
+        bucket.complete = true;
+        log.debug("Leaderboard bucket {} is reloaded", key);
+    }
+
+    private record RankedFilm(long filmId, Double rate) {
+    }
+
+    private record BucketKey(int genreId, int year) {
+    }
+
+    private record FilmPlacement(int year, List<Integer> genreIds, Double rate) {
+        FilmPlacement withRate(Double newRate) {
+            return new FilmPlacement(year, genreIds, newRate);
+        }
+
+        List<BucketKey> bucketKeys() {
+            List<BucketKey> keys = new ArrayList<>(2 + genreIds.size() * 2);
+            keys.add(new BucketKey(ANY, ANY));
+            keys.add(new BucketKey(ANY, year));
+            for (int genreId : genreIds) {
+                keys.add(new BucketKey(genreId, ANY));
+                keys.add(new BucketKey(genreId, year));
+            }
+            return keys;
+        }
+    }
+
+    private static class Bucket {
+        private final int capacity;
+        private final TreeSet<RankedFilm> top = new TreeSet<>(BY_RATE);
+        private int size;
+        private boolean complete = true;
+        // changes with every add, remove or replace
+        private long version;
+
+        Bucket(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void add(RankedFilm film) {
+            version++;
+            size++;
+            offer(film);
+        }
+
+        void remove(RankedFilm film) {
+            version++;
+            size--;
+            if (top.remove(film) && size >= capacity) {
+                complete = false;
+            }
+        }
+
+        void replace(RankedFilm before, RankedFilm after) {
+            version++;
+            if (!top.remove(before)) {
+                offer(after);
+            } else if (top.size() == size - 1 || (!top.isEmpty() && BY_RATE.compare(after, top.last()) < 0)) {
+                // either nothing is left outside the top, or the film still beats everything outside of it
+                top.add(after);
+            } else {
+                top.add(after);
+                complete = false;
+            }
+        }
+
+        List<Long> topIds(int count) {
+            List<Long> ids = new ArrayList<>(Math.min(count, top.size()));
+            for (RankedFilm film : top) {
+                if (ids.size() == count) {
+                    break;
+                }
+                ids.add(film.filmId());
+            }
+            return ids;
+        }
+
+        private void offer(RankedFilm film) {
+            if (top.size() < capacity) {
+                top.add(film);
+            } else if (BY_RATE.compare(film, top.last()) < 0) {
+                top.add(film);
+                top.pollLast();
+            }
+        }
+    }
+}
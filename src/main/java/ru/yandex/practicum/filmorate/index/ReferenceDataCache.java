@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.repository.DirectorRepository;
+import ru.yandex.practicum.filmorate.repository.GenreRepository;
+import ru.yandex.practicum.filmorate.repository.MpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MPA ratings, genres and directors held in memory. MPA and genres are seed data and never change;
+ * directors are swapped in as a whole new table on every change, so readers never lock.
+ * The cache is authoritative: an id it doesn't know doesn't exist, and is counted as a miss.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+    private final MpaRepository mpaRepository;
+    private final GenreRepository genreRepository;
+    private final DirectorRepository directorRepository;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile ReferenceTable<Mpa> mpa;
+    private volatile ReferenceTable<Genre> genres;
+    private volatile ReferenceTable<Director> directors;
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        mpa = new ReferenceTable<>(mpaRepository.findAll(), Mpa::getId);
+        genres = new ReferenceTable<>(genreRepository.findAll(), Genre::getId);
+        directors = new ReferenceTable<>(directorRepository.findAll(), Director::getId);
+        log.info("Reference data is cached: {} mpa, {} genres, {} directors",
+                mpa.all().size(), genres.all().size(), directors.all().size());
+    }
+
+    public Optional<Mpa> getMpa(int id) {
+        return count(mpa.get(id));
+    }
+
+    public List<Mpa> getAllMpa() {
+        return mpa.all();
+    }
+
+    public Optional<Genre> getGenre(int id) {
+        return count(genres.get(id));
+    }
+
+    public List<Genre> getAllGenres() {
+        return genres.all();
+    }
+
+    public Optional<Director> getDirector(int id) {
+        return count(directors.get(id));
+    }
+
+    public List<Director> getAllDirectors() {
+        return directors.all();
+    }
+
+    public synchronized void putDirector(Director director) {
+        directors = directors.with(new Director(director.getId(), director.getName()));
+    }
+
+    public synchronized void removeDirector(int id) {
+        directors = directors.without(id);
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum());
+    }
+
+    private <T> Optional<T> count(T row) {
+        (row == null ? misses : hits).increment();
+        return Optional.ofNullable(row);
+    }
+
+    public record Stats(long hits, long misses) {
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable rows of a small reference table, addressable by id through a plain array.
+ */
+final class ReferenceTable<T> {
+    private final ToIntFunction<T> idOf;
+    private final Object[] byId;
+    private final List<T> all;
+
+    ReferenceTable(List<T> rows, ToIntFunction<T> idOf) {
+        this.idOf = idOf;
+        List<T> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparingInt(idOf));
+        this.all = List.copyOf(sorted);
+        int maxId = sorted.isEmpty() ? 0 : idOf.applyAsInt(sorted.get(sorted.size() - 1));
+        this.byId = new Object[maxId + 1];
+        for (T row : sorted) {
+            byId[idOf.applyAsInt(row)] = row;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        return id >= 0 && id < byId.length ? (T) byId[id] : null;
+    }
+
+    List<T> all() {
+        return all;
+    }
+
+    ReferenceTable<T> with(T row) {
+        int id = idOf.applyAsInt(row);
+        List<T> rows = new ArrayList<>(all.size() + 1);
+        all.stream().filter(existing -> idOf.applyAsInt(existing) != id).forEach(rows::add);
+        rows.add(row);
+        return new ReferenceTable<>(rows, idOf);
+    }
+
+    ReferenceTable<T> without(int id) {
+        return new ReferenceTable<>(all.stream().filter(row -> idOf.applyAsInt(row) != id).toList(), idOf);
+    }
+}
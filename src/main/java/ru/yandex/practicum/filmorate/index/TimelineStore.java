@@ -0,0 +1,243 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.repository.EventRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Recent events of the users each user is friends with. An event is fanned out on write into a bounded
+ * ring of every follower of its author; events of an author followed by more users than the fan-out limit
+ * are kept only in the author's own ring. The own ring of an author who has crossed the limit is merged in
+ * whenever a follower reads the timeline, also after the author drops back under it, so the events
+ * written meanwhile stay visible. Rings hold events in event id order, so a read is a k-way merge of
+ * presorted sources.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TimelineStore {
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final int INITIAL_RING_SIZE = 8;
+    private static final Event[] NO_EVENTS = new Event[0];
+
+    private final FriendGraph friendGraph;
+    private final EventRepository eventRepository;
+
+    @Value("${filmorate.timeline.size:200}")
+    private int capacity;
+
+    @Value("${filmorate.timeline.fan-out-limit:1000}")
+    private int fanOutLimit;
+
+    private final Map<Long, Ring> timelines = new ConcurrentHashMap<>();
+    private final Map<Long, Ring> ownEvents = new ConcurrentHashMap<>();
+    private final Set<Long> pulledAuthors = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void rebuild() {
+        timelines.clear();
+        ownEvents.clear();
+        pulledAuthors.clear();
+        try (Stream<Event> events = eventRepository.streamAll(STREAM_FETCH_SIZE)) {
+            events.forEach(this::append);
+        }
+        log.info("Timelines are built for {} users", timelines.size());
+    }
+
+    /**
+     * Adds written events, which must come in event id order.
+     */
+    public void appendAll(List<Event> events) {
+        events.forEach(this::append);
+    }
+
+    /**
+     * Returns up to limit events of the user's friends with ids below beforeEventId, newest first.
+     */
+    public List<Event> getTimeline(long userId, long beforeEventId, int limit) {
+        int[] friends = friendGraph.friendsOf(userId);
+        PriorityQueue<Cursor> sources = new PriorityQueue<>();
+        addSource(sources, timelines.get(userId), beforeEventId, limit);
+        for (int friend : friends) {
+            if (pulledAuthors.contains((long) friend)) {
+                addSource(sources, ownEvents.get((long) friend), beforeEventId, limit);
+            }
+        }
+
+        List<Event> result = new ArrayList<>(Math.min(limit, capacity));
+        long lastEventId = -1;
+        while (result.size() < limit && !sources.isEmpty()) {
+            Cursor source = sources.poll();
+            Event event = source.current();
+            // an author who crossed the fan-out limit has the same events in both kinds of rings
+            if (event.getEventId() != lastEventId && Arrays.binarySearch(friends, Math.toIntExact(event.getUserId())) >= 0) {
+                result.add(event);
+                lastEventId = event.getEventId();
+            }
+            if (source.advance()) {
+                sources.offer(source);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Backfills the user's timeline with recent events of a new friend.
+     */
+    public void addFriend(long userId, long friendId) {
+        Ring friendEvents = ownEvents.get(friendId);
+        if (friendEvents != null && !pulledAuthors.contains(friendId)) {
+            timeline(userId).mergeAll(friendEvents.newest(Long.MAX_VALUE, capacity));
+        }
+    }
+
+    public void removeUser(long userId) {
+        timelines.remove(userId);
+        ownEvents.remove(userId);
+        pulledAuthors.remove(userId);
+    }
+
+    private void append(Event event) {
+        int[] followers = friendGraph.followersOf(event.getUserId());
+        boolean fannedOut = followers.length <= fanOutLimit;
+        if (!fannedOut) {
+            pulledAuthors.add(event.getUserId());
+        }
+        ownEvents.computeIfAbsent(event.getUserId(), id -> new Ring(capacity)).add(event);
+        if (fannedOut) {
+            for (int follower : followers) {
+                timeline(follower).add(event);
+            }
+        }
+    }
+
+    private Ring timeline(long userId) {
+        return timelines.computeIfAbsent(userId, id -> new Ring(capacity));
+    }
+
+    private static void addSource(Queue<Cursor> sources, Ring ring, long beforeEventId, int limit) {
+        if (ring != null) {
+            Event[] events = ring.newest(beforeEventId, limit);
+            if (events.length > 0) {
+                sources.offer(new Cursor(events));
+            }
+        }
+    }
+
+    /**
+     * The latest events of one source, oldest dropped first once the capacity is reached.
+     */
+    private static final class Ring {
+        private final int capacity;
+        private Event[] events;
+        private int start;
+        private int size;
+
+        Ring(int capacity) {
+            this.capacity = capacity;
+            this.events = new Event[Math.min(INITIAL_RING_SIZE, capacity)];
+        }
+
+        synchronized void add(Event event) {
+            if (size == events.length && size < capacity) {
+                events = Arrays.copyOf(toArray(), Math.min(capacity, size * 2));
+                start = 0;
+            }
+            if (size < events.length) {
+                events[(start + size++) % events.length] = event;
+            } else {
+                events[start] = event;
+                start = (start + 1) % events.length;
+            }
+        }
+
+        /**
+         * Merges events sorted newest first into the ring, keeping the latest capacity of both.
+         */
+        synchronized void mergeAll(Event[] newestFirst) {
+            Event[] own = toArray();
+            Event[] merged = new Event[Math.min(capacity, own.length + newestFirst.length)];
+            int i = own.length - 1;
+            int j = 0;
+            int k = merged.length - 1;
+            while (k >= 0 && (i >= 0 || j < newestFirst.length)) {
+                Event next;
+                if (j >= newestFirst.length || i >= 0 && own[i].getEventId() >= newestFirst[j].getEventId()) {
+                    next = own[i--];
+                    if (j < newestFirst.length && next.getEventId().equals(newestFirst[j].getEventId())) {
+                        j++;
+                    }
+                } else {
+                    next = newestFirst[j++];
+                }
+                merged[k--] = next;
+            }
+            events = k < 0 ? merged : Arrays.copyOfRange(merged, k + 1, merged.length);
+            start = 0;
+            size = events.length;
+            if (events.length == 0) {
+                events = new Event[Math.min(INITIAL_RING_SIZE, capacity)];
+            }
+        }
+
+        /**
+         * Returns up to limit events with ids below beforeEventId, newest first.
+         */
+        synchronized Event[] newest(long beforeEventId, int limit) {
+            int end = size;
+            while (end > 0 && get(end - 1).getEventId() >= beforeEventId) {
+                end--;
+            }
+            if (end == 0) {
+                return NO_EVENTS;
+            }
+            Event[] result = new Event[Math.min(limit, end)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = get(end - 1 - i);
+            }
+            return result;
+        }
+
+        private Event get(int index) {
+            return events[(start + index) % events.length];
+        }
+
+        private Event[] toArray() {
+            Event[] result = new Event[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = get(i);
+            }
+            return result;
+        }
+    }
+
+    private static final class Cursor implements Comparable<Cursor> {
+        private final Event[] events;
+        private int position;
+
+        Cursor(Event[] events) {
+            this.events = events;
+        }
+
+        Event current() {
+            return events[position];
+        }
+
+        boolean advance() {
+            return ++position < events.length;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(other.current().getEventId(), current().getEventId());
+        }
+    }
+}
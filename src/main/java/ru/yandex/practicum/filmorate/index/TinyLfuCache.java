@@ -0,0 +1,284 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-through cache bounded by the total weight of its values, with W-TinyLFU eviction: new entries
+ * land in a small LRU window, and leaving it they have to beat the main area's LRU victim by recent
+ * frequency to stay, so a burst of one-off reads can't flush out the popular entries. The main area
+ * is split into probation and protected segments; a hit in probation promotes an entry to protected.
+ * <p>
+ * Lookups don't block: hits are recorded only when the eviction lock is free at that moment.
+ * A value loaded while its key was invalidated is returned but not cached; {@link #invalidateIf} can't
+ * tell which keys a running load will match, so it stops every load in flight from being cached.
+ */
+public class TinyLfuCache<K, V> {
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final ToIntFunction<V> weigher;
+    private final FrequencySketch sketch;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+    private final ConcurrentHashMap<K, Load> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public TinyLfuCache(long maxWeight, int expectedEntries, ToIntFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max(1, (long) (maxWeight * WINDOW_SHARE));
+        this.protectedMaxWeight = (long) ((maxWeight - windowMaxWeight) * PROTECTED_SHARE);
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            hits.increment();
+            recordHit(node);
+            return node.value;
+        }
+        misses.increment();
+        Load load = loads.compute(key, (k, current) -> (current == null ? new Load() : current).join());
+        try {
+            long started = System.nanoTime();
+            V value = loader.apply(key);
+            loadNanos.add(System.nanoTime() - started);
+            if (value != null) {
+                put(key, value, load);
+            }
+            return value;
+        } finally {
+            loads.computeIfPresent(key, (k, current) -> current == load && current.leave() ? null : current);
+        }
+    }
+
+    public void invalidate(K key) {
+        markStale(key);
+        evictionLock.lock();
+        try {
+            remove(data.get(key));
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidateAll(Collection<K> keys) {
+        keys.forEach(this::markStale);
+        evictionLock.lock();
+        try {
+            keys.forEach(key -> remove(data.get(key)));
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidateIf(Predicate<V> predicate) {
+        loads.keySet().forEach(this::markStale);
+        evictionLock.lock();
+        try {
+            data.values().stream()
+                    .filter(node -> predicate.test(node.value))
+                    .toList()
+                    .forEach(this::remove);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        invalidateIf(value -> true);
+    }
+
+    public Stats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        return new Stats(
+                hitCount,
+                missCount,
+                requests == 0 ? 0 : (double) hitCount / requests,
+                evictions.sum(),
+                missCount == 0 ? 0 : loadNanos.sum() / 1_000_000.0 / missCount,
+                data.size(),
+                weightedSize(),
+                maxWeight);
+    }
+
+    // a stale load isn't cached; later loads of the key start a new one
+    private void markStale(K key) {
+        loads.computeIfPresent(key, (k, load) -> {
+            load.stale = true;
+            return null;
+        });
+    }
+
+    private void recordHit(Node<K, V> node) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (node.queue == null) {
+                return;
+            }
+            sketch.increment(node.key);
+            if (node.queue == probation) {
+                probation.unlink(node);
+                protectedQueue.append(node);
+                while (protectedQueue.weight > protectedMaxWeight) {
+                    probation.append(protectedQueue.unlink(protectedQueue.head));
+                }
+            } else {
+                node.queue.moveToBack(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void put(K key, V value, Load load) {
+        int weight = weigher.applyAsInt(value);
+        if (weight > maxWeight) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            if (load.stale || data.containsKey(key)) {
+                return;
+            }
+            Node<K, V> node = new Node<>(key, value, weight);
+            data.put(key, node);
+            sketch.increment(key);
+            window.append(node);
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evict() {
+        while (window.weight > windowMaxWeight) {
+            probation.append(window.unlink(window.head));
+        }
+        while (weightedSize() > maxWeight) {
+            Node<K, V> victim = probation.head;
+            Node<K, V> candidate = probation.tail;
+            if (victim == null) {
+                evict(protectedQueue.head != null ? protectedQueue.head : window.head);
+            } else if (victim == candidate || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node<K, V> node) {
+        remove(node);
+        evictions.increment();
+    }
+
+    private void remove(Node<K, V> node) {
+        if (node != null && node.queue != null) {
+            node.queue.unlink(node);
+            data.remove(node.key, node);
+        }
+    }
+
+    private long weightedSize() {
+        return window.weight + probation.weight + protectedQueue.weight;
+    }
+
+    public record Stats(long hits, long misses, double hitRate, long evictions, double averageLoadMillis,
+                        int size, long weightedSize, long maxWeight) {
+    }
+
+    private static final class Load {
+        private int loaders;
+        private volatile boolean stale;
+
+        Load join() {
+            loaders++;
+            return this;
+        }
+
+        boolean leave() {
+            return --loaders == 0;
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final int weight;
+        private AccessQueue<K, V> queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class AccessQueue<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+        private long weight;
+
+        void append(Node<K, V> node) {
+            node.queue = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        Node<K, V> unlink(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            weight -= node.weight;
+            return node;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                append(unlink(node));
+            }
+        }
+    }
+}
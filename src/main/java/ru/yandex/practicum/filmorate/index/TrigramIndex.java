@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.*;
+
+/**
+ * Inverted index from trigrams of case-folded text to the sorted ids of entries that contain them.
+ * Substring queries are answered by intersecting the posting lists of the query trigrams and checking
+ * the remaining candidates against the stored text. Not thread-safe, the owner guards access.
+ */
+class TrigramIndex {
+    private static final int GRAM = 3;
+
+    private final Map<Long, String> texts = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    void put(long id, String text) {
+        remove(id);
+        String folded = fold(text);
+        texts.put(id, folded);
+        for (long trigram : trigrams(folded)) {
+            postings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+        }
+    }
+
+    void remove(long id) {
+        String folded = texts.remove(id);
+        if (folded == null) {
+            return;
+        }
+        for (long trigram : trigrams(folded)) {
+            Postings list = postings.get(trigram);
+            list.remove(id);
+            if (list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    List<Long> search(String query) {
+        String folded = fold(query);
+        List<Long> found = new ArrayList<>();
+        if (folded.length() < GRAM) {
+            texts.forEach((id, text) -> {
+                if (text.contains(folded)) {
+                    found.add(id);
+                }
+            });
+            found.sort(null);
+            return found;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (long trigram : trigrams(folded)) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return found;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        Postings smallest = lists.get(0);
+        for (int i = 0; i < smallest.size; i++) {
+            long id = smallest.ids[i];
+            if (containsInAll(lists, id) && texts.get(id).contains(folded)) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    static String fold(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        text.codePoints()
+                .map(cp -> Character.toLowerCase(Character.toUpperCase(cp)))
+                .forEach(folded::appendCodePoint);
+        return folded.toString();
+    }
+
+    private static boolean containsInAll(List<Postings> lists, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] trigrams(String folded) {
+        if (folded.length() < GRAM) {
+            return new long[0];
+        }
+        long[] trigrams = new long[folded.length() - GRAM + 1];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2);
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    private static class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size == 0 || ids[size - 1] < id) {
+                ensureCapacity();
+                ids[size++] = id;
+                return;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -position - 1;
+            ensureCapacity();
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+        }
+    }
+}
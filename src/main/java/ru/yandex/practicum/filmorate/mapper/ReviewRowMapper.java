@@ -16,6 +16,7 @@ public class ReviewRowMapper implements RowMapper<Review> {
                 .setContent(rs.getString("CONTENT"))
                 .setIsPositive(rs.getBoolean("IS_POSITIVE"))
                 .setUserId(rs.getLong("USER_ID"))
-                .setFilmId(rs.getLong("FILM_ID"));
+                .setFilmId(rs.getLong("FILM_ID"))
+                .setUseful(rs.getInt("USEFUL"));
     }
 }
@@ -6,9 +6,6 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-
 @Data
 @Builder
 @NoArgsConstructor
@@ -25,10 +22,6 @@ public class Event {
 
     private Long entityId;
 
-    private LocalDateTime createdAt;
-
     @JsonFormat(shape = JsonFormat.Shape.NUMBER)
-    public long getTimestamp() {
-        return createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-    }
+    private Long timestamp;
 }
\ No newline at end of file
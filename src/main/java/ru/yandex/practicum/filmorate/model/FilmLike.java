@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * State of a user's like of a film: either not liked, or liked with an optional mark.
+ */
+public record FilmLike(long filmId, long userId, boolean liked, Double mark) {
+
+    public static FilmLike of(long filmId, long userId, Double mark) {
+        return new FilmLike(filmId, userId, true, mark);
+    }
+
+    public static FilmLike absent(long filmId, long userId) {
+        return new FilmLike(filmId, userId, false, null);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Counters of FILM_RATING_STATS, or a change of them.
+ */
+public record RatingStats(double markSum, int markCount, int likeCount) {
+    public static final RatingStats EMPTY = new RatingStats(0, 0, 0);
+
+    /**
+     * Share of a single like in the counters. Marks are stored as REAL, so the sum is kept in the
+     * same precision as AVG(MARK) would see it.
+     */
+    public static RatingStats of(FilmLike like) {
+        if (!like.liked()) {
+            return EMPTY;
+        }
+        return like.mark() == null ? new RatingStats(0, 0, 1) : new RatingStats(like.mark().floatValue(), 1, 1);
+    }
+
+    public RatingStats plus(RatingStats other) {
+        return new RatingStats(markSum + other.markSum, markCount + other.markCount, likeCount + other.likeCount);
+    }
+
+    public RatingStats minus(RatingStats other) {
+        return new RatingStats(markSum - other.markSum, markCount - other.markCount, likeCount - other.likeCount);
+    }
+
+    public Double rate() {
+        return markCount > 0 ? markSum / markCount : null;
+    }
+}
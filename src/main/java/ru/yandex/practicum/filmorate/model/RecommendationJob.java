@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+@Data
+@Accessors(chain = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationJob {
+    private Long id;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long lastUserId;
+    private long processedUsers;
+}
@@ -26,4 +26,6 @@ public class Review {
 
     @NotNull
     private Long filmId;
+
+    private int useful;
 }
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Writes for the offline bulk loader. Rows are merged in batches, each in primary key order, while
+ * foreign key checks and secondary indexes of the loaded tables are off; rows that turn out to
+ * reference missing films or users are deleted before the indexes are created and the checks are
+ * turned back on.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BulkLoadRepository {
+    private static final List<String> LOADED_TABLES = List.of("FILM_LIKES", "FRIENDS", "REVIEWS");
+    // as in schema.sql, which also brings them back on the next start if a load fails in between
+    private static final Map<String, String> LOADED_TABLE_INDEXES = Map.of(
+            "FILM_LIKES_USER_IDX", "create index IF NOT EXISTS FILM_LIKES_USER_IDX on PUBLIC.FILM_LIKES (USER_ID, FILM_ID)",
+            "FRIENDS_FRIEND_IDX", "create index IF NOT EXISTS FRIENDS_FRIEND_IDX on PUBLIC.FRIENDS (FRIEND_ID, USER_ID)",
+            "REVIEWS_USEFUL_IDX", "create index IF NOT EXISTS REVIEWS_USEFUL_IDX on PUBLIC.REVIEWS (USEFUL DESC, REVIEW_ID)",
+            "REVIEWS_FILM_USEFUL_IDX",
+            "create index IF NOT EXISTS REVIEWS_FILM_USEFUL_IDX on PUBLIC.REVIEWS (FILM_ID, USEFUL DESC, REVIEW_ID)");
+
+    private final JdbcTemplate jdbc;
+
+    public void disableReferentialIntegrity() {
+        LOADED_TABLES.forEach(table -> jdbc.execute("ALTER TABLE " + table + " SET REFERENTIAL_INTEGRITY FALSE"));
+    }
+
+    /**
+     * Turns foreign key checks back on, verifying every row.
+     */
+    public void enableReferentialIntegrity() {
+        LOADED_TABLES.forEach(table -> jdbc.execute("ALTER TABLE " + table + " SET REFERENTIAL_INTEGRITY TRUE CHECK"));
+    }
+
+    public void dropIndexes() {
+        LOADED_TABLE_INDEXES.keySet().forEach(index -> jdbc.execute("DROP INDEX IF EXISTS " + index));
+    }
+
+    public void createIndexes() {
+        LOADED_TABLE_INDEXES.values().forEach(jdbc::execute);
+    }
+
+    /**
+     * Merges likes; a NaN mark is stored as no mark.
+     */
+    public void mergeLikes(long[] filmIds, long[] userIds, double[] marks, int count) {
+        String mergeLikesQuery = "MERGE INTO FILM_LIKES(FILM_ID, USER_ID, MARK) KEY (FILM_ID, USER_ID) VALUES (?,?,?)";
+        int[] order = keyOrder(filmIds, userIds, count);
+        jdbc.batchUpdate(mergeLikesQuery, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int row = order[i];
+                ps.setLong(1, filmIds[row]);
+                ps.setLong(2, userIds[row]);
+                if (Double.isNaN(marks[row])) {
+                    ps.setNull(3, Types.REAL);
+                } else {
+                    ps.setDouble(3, marks[row]);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+
+    public void mergeFriendships(long[] userIds, long[] friendIds, int count) {
+        String mergeFriendshipsQuery = "MERGE INTO FRIENDS(USER_ID, FRIEND_ID) KEY (USER_ID, FRIEND_ID) VALUES (?,?)";
+        int[] order = keyOrder(userIds, friendIds, count);
+        jdbc.batchUpdate(mergeFriendshipsQuery, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int row = order[i];
+                ps.setLong(1, userIds[row]);
+                ps.setLong(2, friendIds[row]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Merges reviews by user and film; a new review starts with zero usefulness.
+     */
+    public void mergeReviews(long[] userIds, long[] filmIds, boolean[] positive, String[] contents, int count) {
+        String mergeReviewsQuery = """
+                MERGE INTO REVIEWS(USER_ID, FILM_ID, IS_POSITIVE, CONTENT) KEY (USER_ID, FILM_ID)
+                VALUES (?,?,?,?)""";
+        int[] order = keyOrder(userIds, filmIds, count);
+        jdbc.batchUpdate(mergeReviewsQuery, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int row = order[i];
+                ps.setLong(1, userIds[row]);
+                ps.setLong(2, filmIds[row]);
+                ps.setBoolean(3, positive[row]);
+                ps.setString(4, contents[row]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Deletes loaded rows that reference missing films or users and returns how many per table.
+     */
+    public Map<String, Integer> deleteOrphans() {
+        Map<String, Integer> deleted = new LinkedHashMap<>();
+        deleted.put("FILM_LIKES", jdbc.update("""
+                DELETE FROM FILM_LIKES L
+                WHERE NOT EXISTS (SELECT 1 FROM FILMS F WHERE F.FILM_ID = L.FILM_ID)
+                   OR NOT EXISTS (SELECT 1 FROM USERS U WHERE U.USER_ID = L.USER_ID)"""));
+        deleted.put("FRIENDS", jdbc.update("""
+                DELETE FROM FRIENDS R
+                WHERE NOT EXISTS (SELECT 1 FROM USERS U WHERE U.USER_ID = R.USER_ID)
+                   OR NOT EXISTS (SELECT 1 FROM USERS U WHERE U.USER_ID = R.FRIEND_ID)"""));
+        deleted.put("REVIEWS", jdbc.update("""
+                DELETE FROM REVIEWS R
+                WHERE NOT EXISTS (SELECT 1 FROM FILMS F WHERE F.FILM_ID = R.FILM_ID)
+                   OR NOT EXISTS (SELECT 1 FROM USERS U WHERE U.USER_ID = R.USER_ID)"""));
+        return deleted;
+    }
+
+    /**
+     * Refreshes the optimizer's statistics of the loaded tables.
+     */
+    public void analyze() {
+        LOADED_TABLES.forEach(table -> jdbc.execute("ANALYZE TABLE " + table));
+    }
+
+    /**
+     * Returns the rows ordered by their key, so a batch walks the index instead of jumping around it.
+     */
+    private static int[] keyOrder(long[] first, long[] second, int count) {
+        return IntStream.range(0, count).boxed()
+                .sorted(Comparator.<Integer>comparingLong(row -> first[row]).thenComparingLong(row -> second[row]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+}
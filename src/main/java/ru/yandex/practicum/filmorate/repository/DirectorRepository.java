@@ -52,20 +52,18 @@ public class DirectorRepository {
     }
 
     public Director updateDirector(Director director) {
-        if (!isDirectorExists(director.getId())) {
+        String updateDirectorQuery = "UPDATE DIRECTORS SET NAME=? WHERE DIRECTOR_ID=?";
+        if (jdbc.update(updateDirectorQuery, director.getName(), director.getId()) == 0) {
             throw new NotFoundException(String.format("Director with ID %d not found", director.getId()));
         }
-        String updateDirectorQuery = "UPDATE DIRECTORS SET NAME=? WHERE DIRECTOR_ID=?";
-        jdbc.update(updateDirectorQuery, director.getName(), director.getId());
         return jdbc.queryForObject("SELECT * FROM DIRECTORS WHERE DIRECTOR_ID=?;", mapper, director.getId());
     }
 
     public void deleteDirector(int id) {
-        if (!isDirectorExists(id)) {
+        String deleteDirectorQuery = "DELETE FROM DIRECTORS WHERE DIRECTOR_ID=?";
+        if (jdbc.update(deleteDirectorQuery, id) == 0) {
             throw new NotFoundException(String.format("Director with ID %d not found", id));
         }
-        String deleteDirectorQuery = "DELETE FROM DIRECTORS WHERE DIRECTOR_ID=?";
-        jdbc.update(deleteDirectorQuery, id);
     }
 
     public boolean isDirectorExists(int id) {
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Events moved out of the database, kept in immutable segment files on local disk. Every segment
+ * covers a contiguous range of event ids; a new segment is published only once it is fully written,
+ * so readers don't take locks.
+ */
+@Slf4j
+@Repository
+public class EventArchive {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    @Value("${filmorate.events.archive.dir:db/event-archive}")
+    private Path directory;
+
+    @Value("${filmorate.events.archive.block-size:256}")
+    private int blockSize;
+
+    private volatile List<EventSegment> segments = List.of();
+
+    @PostConstruct
+    public synchronized void open() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<EventSegment> opened = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                if (file.toString().endsWith(SEGMENT_SUFFIX)) {
+                    opened.add(EventSegment.open(file));
+                } else if (file.toString().endsWith(SEGMENT_SUFFIX + ".tmp")) {
+                    // left by an archiving run that didn't finish, its events are still in the database
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        opened.sort(Comparator.comparingLong(EventSegment::getMinEventId));
+        segments = List.copyOf(opened);
+        log.info("Event archive is opened with {} segments", opened.size());
+    }
+
+    /**
+     * Writes events, sorted by event id, as a new segment.
+     */
+    public synchronized void append(List<Event> events) {
+        try {
+            Files.createDirectories(directory);
+            EventSegment segment = EventSegment.write(directory, events, blockSize);
+            List<EventSegment> appended = new ArrayList<>(segments);
+            appended.add(segment);
+            segments = List.copyOf(appended);
+            log.info("Archived {} events to {}", events.size(), segment.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getMaxEventId() {
+        List<EventSegment> current = segments;
+        return current.isEmpty() ? 0 : current.get(current.size() - 1).getMaxEventId();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Returns up to limit archived events of users passing the filter with ids above afterEventId, in
+     * event id order.
+     */
+    public List<Event> findAll(long afterEventId, int limit, LongPredicate userFilter) {
+        List<Event> result = new ArrayList<>();
+        for (EventSegment segment : segments) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.addAll(segment.findAll(afterEventId, limit - result.size(), userFilter));
+        }
+        return result;
+    }
+
+    /**
+     * Streams archived events of users passing the filter with ids above afterEventId, in event id
+     * order, decoding one segment at a time.
+     */
+    public Stream<Event> streamAll(long afterEventId, LongPredicate userFilter) {
+        return segments.stream()
+                .flatMap(segment -> segment.findAll(afterEventId, Integer.MAX_VALUE, userFilter).stream());
+    }
+
+    /**
+     * Returns up to limit archived events of the user with ids above afterEventId, in event id order.
+     */
+    public List<Event> findByUserId(long userId, long afterEventId, int limit) {
+        List<Event> result = new ArrayList<>();
+        for (EventSegment segment : segments) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (segment.getMaxEventId() > afterEventId) {
+                result.addAll(segment.findByUserId(userId, afterEventId, limit - result.size()));
+            }
+        }
+        return result;
+    }
+}
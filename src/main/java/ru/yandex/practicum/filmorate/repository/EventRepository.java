@@ -1,10 +1,12 @@
 package ru.yandex.practicum.filmorate.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Event;
 
 import java.sql.PreparedStatement;
@@ -12,17 +14,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
 public class EventRepository {
 
+    private static final String INSERT_EVENT_QUERY = """
+            INSERT INTO events (user_id, event_type, operation, entity_id, created_at)
+            VALUES (?, ?, ?, ?, ?)""";
+
     private final JdbcTemplate jdbcTemplate;
 
-    public List<Event> getByUserId(long userId) {
-        String sql = "SELECT * FROM events WHERE user_id = ? ORDER BY created_at ASC";
-        return jdbcTemplate.query(sql, this::mapRowToEvent, userId);
+    public List<Event> getByUserId(long userId, long afterEventId, int limit) {
+        String sql = "SELECT * FROM events WHERE user_id = ? AND event_id > ? ORDER BY event_id ASC LIMIT ?";
+        return jdbcTemplate.query(sql, this::mapRowToEvent, userId, afterEventId, limit);
     }
 
     public List<Event> getAllEvents() {
@@ -30,18 +38,40 @@ public class EventRepository {
         return jdbcTemplate.query(sql, this::mapRowToEvent);
     }
 
+    public Stream<Event> streamAll(int fetchSize) {
+        String sql = "SELECT * FROM events ORDER BY event_id ASC";
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            stmt.setFetchSize(fetchSize);
+            return stmt;
+        }, this::mapRowToEvent);
+    }
+
+    public List<Event> getPage(long afterEventId, int limit) {
+        String sql = "SELECT * FROM events WHERE event_id > ? ORDER BY event_id ASC LIMIT ?";
+        return jdbcTemplate.query(sql, this::mapRowToEvent, afterEventId, limit);
+    }
+
+    public List<Event> getRange(long afterEventId, long toEventId, int limit) {
+        String sql = "SELECT * FROM events WHERE event_id > ? AND event_id <= ? ORDER BY event_id ASC LIMIT ?";
+        return jdbcTemplate.query(sql, this::mapRowToEvent, afterEventId, toEventId, limit);
+    }
+
+    public long findLastEventIdCreatedBefore(long timestamp) {
+        String sql = "SELECT COALESCE(MAX(event_id), 0) FROM events WHERE created_at < ?";
+        return jdbcTemplate.queryForObject(sql, Long.class, new Timestamp(timestamp));
+    }
+
+    public int deleteUpTo(long eventId) {
+        return jdbcTemplate.update("DELETE FROM events WHERE event_id <= ?", eventId);
+    }
+
     public Event create(Event event) {
-        String sql = "INSERT INTO events (user_id, event_type, operation, entity_id, created_at) " +
-                     "VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sql, new String[]{"event_id"});
-            stmt.setLong(1, event.getUserId());
-            stmt.setString(2, event.getEventType());
-            stmt.setString(3, event.getOperation());
-            stmt.setLong(4, event.getEntityId());
-            stmt.setTimestamp(5, Timestamp.valueOf(event.getCreatedAt()));
+            PreparedStatement stmt = connection.prepareStatement(INSERT_EVENT_QUERY, new String[]{"event_id"});
+            setEventParameters(stmt, event);
             return stmt;
         }, keyHolder);
 
@@ -49,6 +79,38 @@ public class EventRepository {
         return event;
     }
 
+    @Transactional
+    public void createAll(List<Event> events) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_EVENT_QUERY, new String[]{"event_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement stmt, int i) throws SQLException {
+                        setEventParameters(stmt, events.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return events.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setEventId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    private static void setEventParameters(PreparedStatement stmt, Event event) throws SQLException {
+        stmt.setLong(1, event.getUserId());
+        stmt.setString(2, event.getEventType());
+        stmt.setString(3, event.getOperation());
+        stmt.setLong(4, event.getEntityId());
+        stmt.setTimestamp(5, new Timestamp(event.getTimestamp()));
+    }
+
     private Event mapRowToEvent(ResultSet rs, int rowNum) throws SQLException {
         return Event.builder()
                 .eventId(rs.getLong("event_id"))
@@ -56,7 +118,7 @@ public class EventRepository {
                 .eventType(rs.getString("event_type"))
                 .operation(rs.getString("operation"))
                 .entityId(rs.getLong("entity_id"))
-                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .timestamp(rs.getTimestamp("created_at").getTime())
                 .build();
     }
 }
@@ -0,0 +1,266 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.utils.EventType;
+import ru.yandex.practicum.filmorate.utils.OperationType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.LongPredicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable file of archived events. Events are sorted by user id and event id and split into
+ * deflated blocks; a sparse index of the user id range of every block sits at the end of the file,
+ * followed by a fixed-size footer. Segments are read through a memory-mapped buffer.
+ */
+final class EventSegment {
+    private static final int MAGIC = 0x46455653;
+    private static final int RECORD_SIZE = 4 * Long.BYTES + 2;
+    private static final int INDEX_ENTRY_SIZE = 3 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int FOOTER_SIZE = 3 * Long.BYTES + 2 * Integer.BYTES;
+    private static final Comparator<Event> BY_USER_AND_ID = Comparator
+            .comparing(Event::getUserId)
+            .thenComparing(Event::getEventId);
+    private static final Comparator<Event> BY_ID = Comparator.comparing(Event::getEventId);
+    private static final EventType[] EVENT_TYPES = EventType.values();
+    private static final OperationType[] OPERATIONS = OperationType.values();
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long minEventId;
+    private final long maxEventId;
+    private final long[] blockFirstUserIds;
+    private final long[] blockLastUserIds;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final int[] blockEventCounts;
+
+    private EventSegment(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        ByteBuffer footer = buffer.duplicate().position(buffer.capacity() - FOOTER_SIZE);
+        minEventId = footer.getLong();
+        maxEventId = footer.getLong();
+        long indexOffset = footer.getLong();
+        int blocks = footer.getInt();
+        if (footer.getInt() != MAGIC) {
+            throw new IllegalStateException("Not an event segment: " + path);
+        }
+        blockFirstUserIds = new long[blocks];
+        blockLastUserIds = new long[blocks];
+        blockOffsets = new long[blocks];
+        blockLengths = new int[blocks];
+        blockEventCounts = new int[blocks];
+        ByteBuffer index = buffer.duplicate().position(Math.toIntExact(indexOffset));
+        for (int i = 0; i < blocks; i++) {
+            blockFirstUserIds[i] = index.getLong();
+            blockLastUserIds[i] = index.getLong();
+            blockOffsets[i] = index.getLong();
+            blockLengths[i] = index.getInt();
+            blockEventCounts[i] = index.getInt();
+        }
+    }
+
+    static EventSegment open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new EventSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes events, sorted by event id, to a new segment file in the directory, at most blockSize
+     * events per block. The file appears under its final name only once it is completely written.
+     */
+    static EventSegment write(Path directory, List<Event> events, int blockSize) throws IOException {
+        long minEventId = events.get(0).getEventId();
+        long maxEventId = events.get(events.size() - 1).getEventId();
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort(BY_USER_AND_ID);
+
+        Path target = directory.resolve(String.format("events-%019d-%019d.seg", minEventId, maxEventId));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int blocks = (sorted.size() + blockSize - 1) / blockSize;
+            ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+            ByteBuffer records = ByteBuffer.allocate(blockSize * RECORD_SIZE);
+            byte[] compressed = new byte[blockSize * RECORD_SIZE + 64];
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                long offset = 0;
+                for (int from = 0; from < sorted.size(); from += blockSize) {
+                    List<Event> block = sorted.subList(from, Math.min(from + blockSize, sorted.size()));
+                    records.clear();
+                    block.forEach(event -> putRecord(records, event));
+                    deflater.reset();
+                    deflater.setInput(records.array(), 0, records.position());
+                    deflater.finish();
+                    int length = 0;
+                    while (!deflater.finished()) {
+                        if (length == compressed.length) {
+                            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                        }
+                        length += deflater.deflate(compressed, length, compressed.length - length);
+                    }
+                    writeFully(channel, ByteBuffer.wrap(compressed, 0, length));
+
+                    index.putLong(block.get(0).getUserId());
+                    index.putLong(block.get(block.size() - 1).getUserId());
+                    index.putLong(offset);
+                    index.putInt(length);
+                    index.putInt(block.size());
+                    offset += length;
+                }
+                index.putLong(minEventId);
+                index.putLong(maxEventId);
+                index.putLong(offset);
+                index.putInt(blocks);
+                index.putInt(MAGIC);
+                writeFully(channel, index.flip());
+                channel.force(true);
+            } finally {
+                deflater.end();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getMinEventId() {
+        return minEventId;
+    }
+
+    long getMaxEventId() {
+        return maxEventId;
+    }
+
+    /**
+     * Returns up to limit events of the user with ids above afterEventId, in event id order.
+     */
+    List<Event> findByUserId(long userId, long afterEventId, int limit) {
+        List<Event> result = new ArrayList<>();
+        if (afterEventId >= maxEventId) {
+            return result;
+        }
+        // the first block whose range may contain the user; a user can span several consecutive blocks
+        int low = 0;
+        int high = blockLastUserIds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockLastUserIds[middle] < userId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        Inflater inflater = new Inflater();
+        try {
+            for (int block = low; block < blockFirstUserIds.length && blockFirstUserIds[block] <= userId
+                    && result.size() < limit; block++) {
+                ByteBuffer records = inflate(inflater, block);
+                while (records.hasRemaining() && result.size() < limit) {
+                    Event event = getRecord(records);
+                    if (event.getUserId() == userId && event.getEventId() > afterEventId) {
+                        result.add(event);
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to limit events with ids above afterEventId whose user passes the filter, in event id order.
+     */
+    List<Event> findAll(long afterEventId, int limit, LongPredicate userFilter) {
+        if (afterEventId >= maxEventId) {
+            return List.of();
+        }
+        // blocks are ordered by user, so the lowest ids can be anywhere; only the limit of them is kept
+        PriorityQueue<Event> lowest = new PriorityQueue<>(BY_ID.reversed());
+        Inflater inflater = new Inflater();
+        try {
+            for (int block = 0; block < blockOffsets.length; block++) {
+                ByteBuffer records = inflate(inflater, block);
+                while (records.hasRemaining()) {
+                    Event event = getRecord(records);
+                    if (event.getEventId() > afterEventId && userFilter.test(event.getUserId())) {
+                        lowest.add(event);
+                        if (lowest.size() > limit) {
+                            lowest.poll();
+                        }
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        List<Event> result = new ArrayList<>(lowest);
+        result.sort(BY_ID);
+        return result;
+    }
+
+    private ByteBuffer inflate(Inflater inflater, int block) {
+        ByteBuffer compressed = buffer.slice(Math.toIntExact(blockOffsets[block]), blockLengths[block]);
+        ByteBuffer records = ByteBuffer.allocate(blockEventCounts[block] * RECORD_SIZE);
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            while (records.hasRemaining() && !inflater.finished()) {
+                inflater.inflate(records);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted block " + block + " of " + path, e);
+        }
+        return records.flip();
+    }
+
+    private static void putRecord(ByteBuffer records, Event event) {
+        records.putLong(event.getUserId());
+        records.putLong(event.getEventId());
+        records.putLong(event.getTimestamp());
+        records.putLong(event.getEntityId());
+        records.put((byte) EventType.valueOf(event.getEventType()).ordinal());
+        records.put((byte) OperationType.valueOf(event.getOperation()).ordinal());
+    }
+
+    private static Event getRecord(ByteBuffer records) {
+        return Event.builder()
+                .userId(records.getLong())
+                .eventId(records.getLong())
+                .timestamp(records.getLong())
+                .entityId(records.getLong())
+                .eventType(EVENT_TYPES[records.get()].name())
+                .operation(OPERATIONS[records.get()].name())
+                .build();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
@@ -2,25 +2,33 @@ package ru.yandex.practicum.filmorate.repository;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
-import ru.yandex.practicum.filmorate.mapper.DirectorRowMapper;
 import ru.yandex.practicum.filmorate.mapper.FilmRowMapper;
-import ru.yandex.practicum.filmorate.mapper.GenreRowMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.utils.SearchBy;
+import ru.yandex.practicum.filmorate.model.RatingStats;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
@@ -28,42 +36,108 @@ public class FilmRepository {
 
     private final JdbcTemplate jdbc;
     private final FilmRowMapper filmRowMapper;
-    private final GenreRowMapper genreRowMapper;
-    private final DirectorRowMapper directorRowMapper;
+
+    private static final int LIKE_BATCH_SIZE = 500;
+    private static final int RATING_REBUILD_CHUNK_SIZE = 10_000;
+    // a missing like row can't be locked, so like changes of a film take its rating stats row first
+    private static final String LOCK_RATING_STATS = """
+            SELECT FILM_ID FROM FILM_RATING_STATS WHERE FILM_ID = ? FOR UPDATE""";
+    private static final String FIND_LIKE_MARK = """
+            SELECT MARK FROM FILM_LIKES WHERE FILM_ID = ? AND USER_ID = ? FOR UPDATE""";
+    private static final String INSERT_FILM = """
+            INSERT INTO FILMS(NAME, DESCRIPTION, RELEASE_DATE, DURATION, MPA_ID)
+            VALUES (?,?,?,?,?)""";
+    private static final String ADD_RATING_STATS_DELTA = """
+            MERGE INTO FILM_RATING_STATS S
+            USING (VALUES (CAST(? AS INTEGER), CAST(? AS DOUBLE PRECISION), CAST(? AS INTEGER), CAST(? AS INTEGER)))
+                AS D(FILM_ID, MARK_SUM, MARK_COUNT, LIKE_COUNT)
+            ON S.FILM_ID = D.FILM_ID
+            WHEN MATCHED THEN UPDATE SET
+                MARK_SUM = S.MARK_SUM + D.MARK_SUM,
+                MARK_COUNT = S.MARK_COUNT + D.MARK_COUNT,
+                LIKE_COUNT = S.LIKE_COUNT + D.LIKE_COUNT
+            WHEN NOT MATCHED THEN INSERT (FILM_ID, MARK_SUM, MARK_COUNT, LIKE_COUNT)
+                VALUES (D.FILM_ID, D.MARK_SUM, D.MARK_COUNT, D.LIKE_COUNT)""";
+    private static final String SUBTRACT_RATING_STATS = """
+            UPDATE FILM_RATING_STATS
+            SET MARK_SUM = MARK_SUM - ?, MARK_COUNT = MARK_COUNT - ?, LIKE_COUNT = LIKE_COUNT - 1
+            WHERE FILM_ID = ?""";
 
     public List<Film> findAll() {
         String findAllQuery = "SELECT * FROM FILMS";
         return jdbc.query(findAllQuery, filmRowMapper);
     }
 
+    public List<Film> findPage(long afterId, int limit) {
+        String findPageQuery = "SELECT * FROM FILMS WHERE FILM_ID > ? ORDER BY FILM_ID LIMIT ?";
+        return jdbc.query(findPageQuery, filmRowMapper, afterId, limit);
+    }
+
+    public List<Film> findAllByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String findAllByIdsQuery = "SELECT * FROM FILMS WHERE FILM_ID IN (%s)".formatted(placeholders(ids.size()));
+        return jdbc.query(findAllByIdsQuery, filmRowMapper, ids.toArray());
+    }
+
+    @Transactional
     public Film save(Film film) {
-        String insertFilmQuery = """
-                INSERT INTO FILMS(NAME, DESCRIPTION, RELEASE_DATE, DURATION, MPA_ID)
-                VALUES (?,?,?,?,?)""";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbc.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(insertFilmQuery, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, film.getName());
-            ps.setString(2, film.getDescription());
-            ps.setDate(3, Date.valueOf(film.getReleaseDate()));
-            ps.setInt(4, film.getDuration());
-            ps.setInt(5, film.getMpa());
+            PreparedStatement ps = connection.prepareStatement(INSERT_FILM, new String[]{"FILM_ID"});
+            setFilm(ps, film);
             return ps;
         }, keyHolder);
 
         film.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        jdbc.update("INSERT INTO FILM_RATING_STATS(FILM_ID) VALUES (?)", film.getId());
         return film;
     }
 
+    /**
+     * Inserts films with the genre and director ids at the same positions in one transaction, using
+     * a single batch per table, and sets the generated film ids.
+     */
+    @Transactional
+    public List<Film> saveAll(List<Film> films, List<List<Integer>> genreIds, List<List<Integer>> directorIds) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM, new String[]{"FILM_ID"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilm(ps, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> stats = new ArrayList<>(films.size());
+        List<Object[]> genres = new ArrayList<>();
+        List<Object[]> directors = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            long id = ((Number) keys.get(i).get("FILM_ID")).longValue();
+            films.get(i).setId(id);
+            stats.add(new Object[]{id});
+            genreIds.get(i).forEach(genreId -> genres.add(new Object[]{id, genreId}));
+            directorIds.get(i).forEach(directorId -> directors.add(new Object[]{id, directorId}));
+        }
+        jdbc.batchUpdate("INSERT INTO FILM_RATING_STATS(FILM_ID) VALUES (?)", stats);
+        jdbc.batchUpdate("INSERT INTO FILM_GENRES(FILM_ID, GENRE_ID) VALUES (?,?)", genres);
+        jdbc.batchUpdate("INSERT INTO FILM_DIRECTORS(FILM_ID, DIRECTOR_ID) VALUES (?,?)", directors);
+        return films;
+    }
+
     public Film update(Film film) {
         String updateQuery = """
                 UPDATE FILMS
                 SET NAME = ?, DESCRIPTION = ?, RELEASE_DATE = ?, DURATION = ?, MPA_ID = ? WHERE FILM_ID = ?""";
         Long id = film.getId();
-        if (!existById(id)) throw new NotFoundException("There is no film with id=" + id);
-
-        jdbc.update(updateQuery,
+        int updatedRows = jdbc.update(updateQuery,
                 film.getName(),
                 film.getDescription(),
                 Date.valueOf(film.getReleaseDate()),
@@ -71,7 +145,7 @@ public class FilmRepository {
                 film.getMpa(),
                 id
         );
-
+        if (updatedRows == 0) throw new NotFoundException("There is no film with id=" + id);
         return film;
     }
 
@@ -91,124 +165,210 @@ public class FilmRepository {
         return updatedRows > 0;
     }
 
-    public boolean existById(long id) {
-        String isFilmExist = "SELECT EXISTS(SELECT 1 FROM FILMS WHERE FILM_ID = ?)";
-        return jdbc.queryForObject(isFilmExist, Boolean.class, id);
+    public void forEachId(LongConsumer consumer) {
+        jdbc.query("SELECT FILM_ID FROM FILMS", rs -> {
+            consumer.accept(rs.getLong("FILM_ID"));
+        });
     }
 
+    @Transactional
     public boolean addLike(long id, long userId, Double mark) {
         String addLikeRowQuery = "MERGE INTO FILM_LIKES(FILM_ID, USER_ID, MARK) VALUES (?,?,?)";
+        jdbc.queryForList(LOCK_RATING_STATS, id);
+        List<Double> previous = findLikeMark(id, userId);
         try {
             jdbc.update(addLikeRowQuery, id, userId, mark);
-            return true;
         } catch (DataAccessException e) {
             return false;
         }
+
+        // marks are stored as REAL, so the sum is kept in the same precision as AVG(MARK) would see it
+        double markDelta = storedMark(mark);
+        int markCountDelta = mark == null ? 0 : 1;
+        int likeCountDelta = 1;
+        if (!previous.isEmpty()) {
+            Double previousMark = previous.get(0);
+            markDelta -= storedMark(previousMark);
+            markCountDelta -= previousMark == null ? 0 : 1;
+            likeCountDelta = 0;
+        }
+        jdbc.update(ADD_RATING_STATS_DELTA, id, markDelta, markCountDelta, likeCountDelta);
+        return true;
     }
 
+    @Transactional
     public boolean removeLike(long id, long userId) {
         String deleteLikeRowQuery = "DELETE FROM FILM_LIKES WHERE FILM_ID=? AND USER_ID=?";
+        jdbc.queryForList(LOCK_RATING_STATS, id);
+        List<Double> previous = findLikeMark(id, userId);
+        if (previous.isEmpty()) {
+            return false;
+        }
         int update = jdbc.update(deleteLikeRowQuery, id, userId);
+        Double previousMark = previous.get(0);
+        jdbc.update(SUBTRACT_RATING_STATS, storedMark(previousMark), previousMark == null ? 0 : 1, id);
         return update > 0;
     }
 
-    public List<Genre> findGenresByFilmId(long id) {
-        String genresByFilmIdQuery = """
-                SELECT * FROM GENRES WHERE GENRE_ID IN(
-                    SELECT GENRE_ID FROM FILM_GENRES WHERE FILM_ID = ?)""";
-        return jdbc.query(genresByFilmIdQuery, genreRowMapper, id);
+    public FilmLike findLike(long id, long userId) {
+        String findLikeQuery = "SELECT MARK FROM FILM_LIKES WHERE FILM_ID = ? AND USER_ID = ?";
+        List<Double> mark = jdbc.query(findLikeQuery, (rs, rowNum) -> rs.getObject("MARK", Double.class), id, userId);
+        return mark.isEmpty() ? FilmLike.absent(id, userId) : FilmLike.of(id, userId, mark.get(0));
     }
 
-    public List<Director> findDirectorsByFilmId(long id) {
-        String sql = """
-                SELECT *
-                FROM DIRECTORS D
-                JOIN FILM_DIRECTORS FD ON D.DIRECTOR_ID=FD.DIRECTOR_ID
-                WHERE FD.FILM_ID=?
-                ORDER BY FD.DIRECTOR_ID;""";
-        return jdbc.query(sql, directorRowMapper, id);
+    /**
+     * Brings likes to the given states, at most one per film and user, in one transaction. Rating stats
+     * get a single update per film with the sum of its changes.
+     */
+    @Transactional
+    public void applyLikes(List<FilmLike> likes) {
+        Map<Long, RatingStats> deltas = new TreeMap<>();
+        List<Object[]> stored = new ArrayList<>();
+        List<Object[]> removed = new ArrayList<>();
+        for (int from = 0; from < likes.size(); from += LIKE_BATCH_SIZE) {
+            List<FilmLike> batch = likes.subList(from, Math.min(from + LIKE_BATCH_SIZE, likes.size()));
+            Map<Long, Map<Long, Double>> marks = findMarksForUpdate(batch);
+            for (FilmLike like : batch) {
+                Map<Long, Double> filmMarks = marks.getOrDefault(like.filmId(), Map.of());
+                FilmLike previous = filmMarks.containsKey(like.userId())
+                        ? FilmLike.of(like.filmId(), like.userId(), filmMarks.get(like.userId()))
+                        : FilmLike.absent(like.filmId(), like.userId());
+                deltas.merge(like.filmId(), RatingStats.of(like).minus(RatingStats.of(previous)), RatingStats::plus);
+                if (like.liked()) {
+                    stored.add(new Object[]{like.filmId(), like.userId(), like.mark()});
+                } else if (previous.liked()) {
+                    removed.add(new Object[]{like.filmId(), like.userId()});
+                }
+            }
+        }
+        jdbc.batchUpdate("MERGE INTO FILM_LIKES(FILM_ID, USER_ID, MARK) VALUES (?,?,?)", stored);
+        jdbc.batchUpdate("DELETE FROM FILM_LIKES WHERE FILM_ID=? AND USER_ID=?", removed);
+        jdbc.batchUpdate(ADD_RATING_STATS_DELTA, deltas.entrySet().stream()
+                .filter(delta -> !delta.getValue().equals(RatingStats.EMPTY))
+                .map(delta -> new Object[]{delta.getKey(), delta.getValue().markSum(),
+                        delta.getValue().markCount(), delta.getValue().likeCount()})
+                .toList());
     }
 
     public Double rateByFilmId(long id) {
-        String calculateRateByFilmId = "SELECT AVG(MARK) FROM FILM_LIKES WHERE FILM_ID = ?";
-        return jdbc.queryForObject(calculateRateByFilmId, Double.class, id);
+        String rateByFilmIdQuery = "SELECT RATE FROM FILM_RATING_STATS WHERE FILM_ID = ?";
+        List<Double> rate = jdbc.query(rateByFilmIdQuery, (rs, rowNum) -> rs.getObject("RATE", Double.class), id);
+        return rate.isEmpty() ? null : rate.get(0);
     }
 
-    public void updateGenres(List<Genre> genres, long id) {
-        String deleteFilmsGenresRowQuery = "DELETE FROM FILM_GENRES WHERE FILM_ID=?";
+    public Map<Long, List<Integer>> findGenreIdsByFilmIds(Collection<Long> ids) {
+        return findIdsByFilmIds("FILM_GENRES", "GENRE_ID", ids);
+    }
 
-        jdbc.update(deleteFilmsGenresRowQuery, id);
+    public Map<Long, List<Integer>> findDirectorIdsByFilmIds(Collection<Long> ids) {
+        return findIdsByFilmIds("FILM_DIRECTORS", "DIRECTOR_ID", ids);
+    }
 
-        if (genres == null || genres.isEmpty()) {
-            return;
-        }
-        String insertFilmGenresQuery = "MERGE INTO FILM_GENRES(FILM_ID, GENRE_ID) VALUES(?,?)";
-        for (Genre genre : genres) {
-            jdbc.update(insertFilmGenresQuery, id, genre.getId());
+    private Map<Long, List<Integer>> findIdsByFilmIds(String table, String idColumn, Collection<Long> ids) {
+        Map<Long, List<Integer>> idsByFilm = new HashMap<>();
+        if (ids.isEmpty()) {
+            return idsByFilm;
         }
+        String idsByFilmIdsQuery = """
+                SELECT FILM_ID, %2$s FROM %1$s
+                WHERE FILM_ID IN (%3$s)
+                ORDER BY FILM_ID, %2$s""".formatted(table, idColumn, placeholders(ids.size()));
+        jdbc.query(idsByFilmIdsQuery, rs -> {
+            idsByFilm.computeIfAbsent(rs.getLong("FILM_ID"), filmId -> new ArrayList<>()).add(rs.getInt(idColumn));
+        }, ids.toArray());
+        return idsByFilm;
     }
 
-    public List<Film> findFilmByUserIdLike(long userId) {
-        String findByUserIdLikes = """
-                SELECT * FROM FILMS
-                WHERE FILM_ID IN (SELECT FILM_ID FROM FILM_LIKES WHERE USER_ID = ?)""";
-        return jdbc.query(findByUserIdLikes, filmRowMapper, userId);
+    public Map<Long, Double> rateByFilmIds(Collection<Long> ids) {
+        Map<Long, Double> rates = new HashMap<>();
+        if (ids.isEmpty()) {
+            return rates;
+        }
+        String rateByFilmIdsQuery = """
+                SELECT FILM_ID, RATE
+                FROM FILM_RATING_STATS
+                WHERE FILM_ID IN (%s)""".formatted(placeholders(ids.size()));
+        jdbc.query(rateByFilmIdsQuery, rs -> {
+            rates.put(rs.getLong("FILM_ID"), rs.getObject("RATE", Double.class));
+        }, ids.toArray());
+        return rates;
     }
 
-    public List<Film> getPopularFilmsByGenreAndYear(int genreId, int year, int count) {
-        String sql = """
-                SELECT *
-                FROM FILMS WHERE FILM_ID IN (
-                SELECT FILM_ID FROM FILM_GENRES WHERE GENRE_ID = ?
-                INTERSECT
-                SELECT FILM_ID FROM FILMS WHERE YEAR(FILMS.RELEASE_DATE) = ?)
-                LIMIT ?""";
-        return jdbc.query(sql, filmRowMapper, genreId, year, count);
+    public Map<Long, RatingStats> findRatingStats(Collection<Long> ids) {
+        Map<Long, RatingStats> stats = new HashMap<>();
+        if (ids.isEmpty()) {
+            return stats;
+        }
+        String ratingStatsQuery = """
+                SELECT FILM_ID, MARK_SUM, MARK_COUNT, LIKE_COUNT
+                FROM FILM_RATING_STATS
+                WHERE FILM_ID IN (%s)""".formatted(placeholders(ids.size()));
+        jdbc.query(ratingStatsQuery, rs -> {
+            stats.put(rs.getLong("FILM_ID"), new RatingStats(rs.getDouble("MARK_SUM"), rs.getInt("MARK_COUNT"),
+                    rs.getInt("LIKE_COUNT")));
+        }, ids.toArray());
+        return stats;
     }
 
-    public List<Film> getPopularFilmsByYear(int year, int count) {
-        String sql = """
-                SELECT *
-                FROM FILMS WHERE FILM_ID IN (
-                SELECT FILM_ID FROM FILMS WHERE YEAR(FILMS.RELEASE_DATE) = ?)
-                LIMIT ?""";
-        return jdbc.query(sql, filmRowMapper, year, count);
+    public void updateGenres(List<Genre> genres, long id) {
+        String deleteFilmsGenresRowQuery = "DELETE FROM FILM_GENRES WHERE FILM_ID=?";
+
+        jdbc.update(deleteFilmsGenresRowQuery, id);
+
+        if (genres == null || genres.isEmpty()) {
+            return;
+        }
+        String insertFilmGenresQuery = "MERGE INTO FILM_GENRES(FILM_ID, GENRE_ID) VALUES(?,?)";
+        jdbc.batchUpdate(insertFilmGenresQuery, genres.stream()
+                .map(genre -> new Object[]{id, genre.getId()})
+                .toList());
     }
 
-    public List<Film> getPopularFilmsByGenre(int genreId, int count) {
-        String sql = """
-                SELECT *
-                FROM FILMS WHERE FILM_ID IN (
-                SELECT FILM_ID FROM FILM_GENRES WHERE GENRE_ID = ?)
-                LIMIT ?""";
-        return jdbc.query(sql, filmRowMapper, genreId, count);
+    public List<Film> findCommonFilms(long userId, long friendId) {
+        String findCommonFilmsQuery = """
+                SELECT F.*
+                FROM FILM_LIKES U
+                JOIN FILM_LIKES O ON O.USER_ID = ? AND O.FILM_ID = U.FILM_ID
+                JOIN FILMS F ON F.FILM_ID = U.FILM_ID
+                LEFT JOIN FILM_RATING_STATS S ON S.FILM_ID = U.FILM_ID
+                WHERE U.USER_ID = ?
+                ORDER BY S.RATE DESC NULLS LAST, F.FILM_ID""";
+        return jdbc.query(findCommonFilmsQuery, filmRowMapper, friendId, userId);
     }
 
-    public List<Film> search(String queryForSearch, SearchBy searchBy) {
-        return jdbc.query(searchBy.getQuery(), filmRowMapper, "%" + queryForSearch + "%");
+    public List<Film> getPopularFilms(Integer genreId, Integer year, int count) {
+        StringBuilder popularQuery = new StringBuilder("""
+                SELECT F.*
+                FROM FILM_RATING_STATS S
+                JOIN FILMS F ON F.FILM_ID = S.FILM_ID
+                """);
+        List<Object> params = new ArrayList<>();
+        if (genreId != null) {
+            popularQuery.append("JOIN FILM_GENRES G ON G.FILM_ID = S.FILM_ID AND G.GENRE_ID = ?\n");
+            params.add(genreId);
+        }
+        if (year != null) {
+            popularQuery.append("WHERE F.RELEASE_YEAR = ?\n");
+            params.add(year);
+        }
+        popularQuery.append("ORDER BY S.RATE DESC NULLS LAST, S.FILM_ID\nLIMIT ?");
+        params.add(count);
+        return jdbc.query(popularQuery.toString(), filmRowMapper, params.toArray());
     }
 
-    public List<Director> updateDirectors(List<Director> directors, long id) {
+    public void updateDirectors(List<Director> directors, long id) {
         String sql = """
                 DELETE FROM FILM_DIRECTORS
                 WHERE FILM_ID=?""";
         jdbc.update(sql, id);
-        List<Director> directorsWithName = new ArrayList<>();
 
         if (directors == null || directors.isEmpty()) {
-            return directorsWithName;
+            return;
         }
         sql = "MERGE INTO FILM_DIRECTORS(FILM_ID, DIRECTOR_ID) VALUES(?,?)";
-        String sqlAddNames = """
-                SELECT *
-                FROM DIRECTORS d
-                JOIN FILM_DIRECTORS fd ON d.DIRECTOR_ID=fd.DIRECTOR_ID
-                WHERE fd.FILM_ID=? AND d.DIRECTOR_ID=?""";
-        for (Director director : directors) {
-            jdbc.update(sql, id, director.getId());
-            directorsWithName.add(jdbc.queryForObject(sqlAddNames, directorRowMapper, id, director.getId()));
-        }
-        return directorsWithName;
+        jdbc.batchUpdate(sql, directors.stream()
+                .map(director -> new Object[]{id, director.getId()})
+                .toList());
     }
 
     public List<Film> getFilmsByDirectorId(int directorId) {
@@ -218,36 +378,106 @@ public class FilmRepository {
         return jdbc.query(query, filmRowMapper, directorId);
     }
 
-    public List<Film> getRecommendations(long userId) {
-        String bestMatchUserIdsQuery = """
-                SELECT USER_ID
+    public Map<Long, Double> findAllRates() {
+        Map<Long, Double> rates = new HashMap<>();
+        jdbc.query("SELECT FILM_ID, RATE FROM FILM_RATING_STATS", rs -> {
+            rates.put(rs.getLong("FILM_ID"), rs.getObject("RATE", Double.class));
+        });
+        return rates;
+    }
+
+    public Map<Long, List<Integer>> findAllGenreIds() {
+        Map<Long, List<Integer>> genreIds = new HashMap<>();
+        jdbc.query("SELECT FILM_ID, GENRE_ID FROM FILM_GENRES ORDER BY FILM_ID, GENRE_ID", rs -> {
+            genreIds.computeIfAbsent(rs.getLong("FILM_ID"), filmId -> new ArrayList<>()).add(rs.getInt("GENRE_ID"));
+        });
+        return genreIds;
+    }
+
+    public Map<Long, List<Integer>> findAllDirectorIds() {
+        Map<Long, List<Integer>> directorIds = new HashMap<>();
+        jdbc.query("SELECT FILM_ID, DIRECTOR_ID FROM FILM_DIRECTORS ORDER BY FILM_ID, DIRECTOR_ID", rs -> {
+            directorIds.computeIfAbsent(rs.getLong("FILM_ID"), filmId -> new ArrayList<>()).add(rs.getInt("DIRECTOR_ID"));
+        });
+        return directorIds;
+    }
+
+    public Map<Long, List<Long>> findAllLikedFilmIds() {
+        Map<Long, List<Long>> filmIds = new HashMap<>();
+        jdbc.query("SELECT USER_ID, FILM_ID FROM FILM_LIKES", rs -> {
+            filmIds.computeIfAbsent(rs.getLong("USER_ID"), userId -> new ArrayList<>()).add(rs.getLong("FILM_ID"));
+        });
+        return filmIds;
+    }
+
+    public List<Long> findFilmIdsByUserIdLike(long userId) {
+        String filmIdsByUserIdLikeQuery = "SELECT FILM_ID FROM FILM_LIKES WHERE USER_ID = ?";
+        return jdbc.queryForList(filmIdsByUserIdLikeQuery, Long.class, userId);
+    }
+
+    public long findMaxFilmId() {
+        String maxFilmIdQuery = "SELECT COALESCE(MAX(FILM_ID), 0) FROM FILMS";
+        return jdbc.queryForObject(maxFilmIdQuery, Long.class);
+    }
+
+    /**
+     * Rebuilds the rating stats of all films in parallel chunks of film ids; returns how many films it covered.
+     */
+    public int rebuildRatingStats() {
+        long chunks = findMaxFilmId() / RATING_REBUILD_CHUNK_SIZE;
+        return LongStream.rangeClosed(0, chunks)
+                .parallel()
+                .mapToInt(chunk -> rebuildRatingStats(
+                        chunk * RATING_REBUILD_CHUNK_SIZE + 1,
+                        (chunk + 1) * RATING_REBUILD_CHUNK_SIZE))
+                .sum();
+    }
+
+    public int rebuildRatingStats(long fromId, long toId) {
+        String rebuildQuery = """
+                MERGE INTO FILM_RATING_STATS (FILM_ID, MARK_SUM, MARK_COUNT, LIKE_COUNT) KEY (FILM_ID)
+                SELECT F.FILM_ID, COALESCE(SUM(L.MARK), 0), COUNT(L.MARK), COUNT(L.USER_ID)
+                FROM FILMS F
+                LEFT JOIN FILM_LIKES L ON L.FILM_ID = F.FILM_ID
+                WHERE F.FILM_ID BETWEEN ? AND ?
+                GROUP BY F.FILM_ID""";
+        return jdbc.update(rebuildQuery, fromId, toId);
+    }
+
+    private List<Double> findLikeMark(long id, long userId) {
+        return jdbc.query(FIND_LIKE_MARK, (rs, rowNum) -> rs.getObject("MARK", Double.class), id, userId);
+    }
+
+    private Map<Long, Map<Long, Double>> findMarksForUpdate(List<FilmLike> likes) {
+        Map<Long, Map<Long, Double>> marks = new HashMap<>();
+        String marksQuery = """
+                SELECT FILM_ID, USER_ID, MARK
                 FROM FILM_LIKES
-                WHERE FILM_ID IN (SELECT FILM_ID FROM FILM_LIKES WHERE USER_ID = ?) AND NOT USER_ID = ?
-                GROUP BY USER_ID
-                ORDER BY COUNT(USER_ID) DESC""";
-        String recommendationsQuery = """
-                SELECT * FROM FILMS
-                WHERE FILM_ID IN(
-                	SELECT FILM_ID
-                	FROM FILM_LIKES WHERE USER_ID = ?
-                	EXCEPT
-                	SELECT FILM_ID
-                	FROM FILM_LIKES WHERE USER_ID = ?)""";
-        List<Film> result = new ArrayList<>();
-        jdbc.query(bestMatchUserIdsQuery, new ResultSetExtractor<Void>() {
-            @Override
-            public Void extractData(ResultSet rs) throws SQLException, DataAccessException {
-                while (rs.next()) {
-                    long matchUserId = rs.getLong("USER_ID");
-                    List<Film> recommendations = jdbc.query(recommendationsQuery, filmRowMapper, matchUserId, userId);
-                    if (!recommendations.isEmpty()) {
-                        result.addAll(recommendations);
-                        return null;
-                    }
-                }
-                return null;
-            }
-        }, userId, userId);
-        return result;
+                WHERE (FILM_ID, USER_ID) IN (%s)
+                FOR UPDATE""".formatted(String.join(",", Collections.nCopies(likes.size(), "(?,?)")));
+        Object[] params = likes.stream()
+                .flatMap(like -> Stream.of(like.filmId(), like.userId()))
+                .toArray();
+        jdbc.query(marksQuery, rs -> {
+            marks.computeIfAbsent(rs.getLong("FILM_ID"), filmId -> new HashMap<>())
+                    .put(rs.getLong("USER_ID"), rs.getObject("MARK", Double.class));
+        }, params);
+        return marks;
+    }
+
+    private static void setFilm(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+        ps.setInt(4, film.getDuration());
+        ps.setInt(5, film.getMpa());
+    }
+
+    private static double storedMark(Double mark) {
+        return mark == null ? 0 : mark.floatValue();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
     }
 }
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.RecommendationJob;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class RecommendationRepository {
+    private final JdbcTemplate jdbc;
+
+    private static final String MERGE_RECOMMENDATIONS = """
+            MERGE INTO USER_RECOMMENDATIONS (USER_ID, FILM_IDS, COMPUTED_AT) KEY (USER_ID)
+            VALUES (?, ?, ?)""";
+    private static final String FIND_FRESH_RECOMMENDATIONS = """
+            SELECT R.FILM_IDS
+            FROM USER_RECOMMENDATIONS R
+            WHERE R.USER_ID = ?
+              AND NOT EXISTS (SELECT 1 FROM EVENTS E
+                              WHERE E.USER_ID = R.USER_ID
+                                AND E.EVENT_TYPE = 'LIKE'
+                                AND E.CREATED_AT >= R.COMPUTED_AT)""";
+
+    /**
+     * Returns the stored recommendations unless the user liked or unliked something after they were computed.
+     */
+    public Optional<List<Long>> findFreshRecommendations(long userId) {
+        List<List<Long>> found = jdbc.query(FIND_FRESH_RECOMMENDATIONS,
+                (rs, rowNum) -> toFilmIds(rs.getArray("FILM_IDS")), userId);
+        return found.stream().findFirst();
+    }
+
+    public void saveRecommendations(Map<Long, List<Long>> recommendations, LocalDateTime computedAt) {
+        List<Map.Entry<Long, List<Long>>> rows = new ArrayList<>(recommendations.entrySet());
+        jdbc.batchUpdate(MERGE_RECOMMENDATIONS, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.getKey());
+            ps.setObject(2, row.getValue().toArray(new Long[0]));
+            ps.setTimestamp(3, Timestamp.valueOf(computedAt));
+        });
+    }
+
+    public Optional<RecommendationJob> findLastJob() {
+        String findLastJobQuery = "SELECT * FROM RECOMMENDATION_JOBS ORDER BY JOB_ID DESC LIMIT 1";
+        return jdbc.query(findLastJobQuery, this::mapRowToJob).stream().findFirst();
+    }
+
+    public RecommendationJob startJob(LocalDateTime startedAt) {
+        String startJobQuery = "INSERT INTO RECOMMENDATION_JOBS (STARTED_AT) VALUES (?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(startJobQuery, new String[]{"JOB_ID"});
+            ps.setTimestamp(1, Timestamp.valueOf(startedAt));
+            return ps;
+        }, keyHolder);
+        return new RecommendationJob()
+                .setId(Objects.requireNonNull(keyHolder.getKey()).longValue())
+                .setStartedAt(startedAt);
+    }
+
+    public void saveProgress(RecommendationJob job) {
+        String saveProgressQuery = """
+                UPDATE RECOMMENDATION_JOBS SET LAST_USER_ID = ?, PROCESSED_USERS = ?, FINISHED_AT = ?
+                WHERE JOB_ID = ?""";
+        jdbc.update(saveProgressQuery,
+                job.getLastUserId(),
+                job.getProcessedUsers(),
+                job.getFinishedAt() == null ? null : Timestamp.valueOf(job.getFinishedAt()),
+                job.getId());
+    }
+
+    private RecommendationJob mapRowToJob(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp finishedAt = rs.getTimestamp("FINISHED_AT");
+        return new RecommendationJob()
+                .setId(rs.getLong("JOB_ID"))
+                .setStartedAt(rs.getTimestamp("STARTED_AT").toLocalDateTime())
+                .setFinishedAt(finishedAt == null ? null : finishedAt.toLocalDateTime())
+                .setLastUserId(rs.getLong("LAST_USER_ID"))
+                .setProcessedUsers(rs.getLong("PROCESSED_USERS"));
+    }
+
+    private static List<Long> toFilmIds(Array array) throws SQLException {
+        return Arrays.stream((Object[]) array.getArray())
+                .map(id -> ((Number) id).longValue())
+                .toList();
+    }
+}
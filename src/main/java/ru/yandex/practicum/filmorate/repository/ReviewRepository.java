@@ -6,16 +6,17 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.ReviewRowMapper;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.utils.PageCursor;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.LongConsumer;
 
 @Repository
 @RequiredArgsConstructor
@@ -23,20 +24,45 @@ public class ReviewRepository {
     private final JdbcTemplate jdbc;
     private final ReviewRowMapper mapper;
 
-    private static final String DELETE_LIKE_DISLIKE_ROW = "DELETE FROM REVIEW_LIKES WHERE REVIEW_ID = ? AND USER_ID = ?";
-    private static final String IS_REVIEW_LIKE_DISLIKE_EXIST = """
-            SELECT EXISTS(SELECT 1 FROM REVIEW_LIKES
-            WHERE REVIEW_ID = ? AND USER_ID = ? AND IS_DISLIKE = ?)""";
-    private static final String ADD_REVIEW_LIKE_DISLIKE_ROW = """
-            INSERT INTO REVIEW_LIKES (REVIEW_ID, USER_ID, IS_DISLIKE) VALUES (?,?,?)""";
-    private static final String UPDATE_REVIEW_LIKE_ROW = """
-            UPDATE REVIEW_LIKES SET IS_DISLIKE = ? WHERE REVIEW_ID = ? AND USER_ID = ?""";
+    // each vote statement reports the vote it replaced, so the usefulness delta needs no extra probe
+    private static final String SET_VOTE = """
+            SELECT IS_DISLIKE FROM OLD TABLE (
+                MERGE INTO REVIEW_LIKES (REVIEW_ID, USER_ID, IS_DISLIKE) KEY (REVIEW_ID, USER_ID) VALUES (?, ?, ?))""";
+    private static final String DELETE_VOTE = """
+            SELECT IS_DISLIKE FROM OLD TABLE (
+                DELETE FROM REVIEW_LIKES WHERE REVIEW_ID = ? AND USER_ID = ?)""";
+    private static final String DELETE_DISLIKE = """
+            SELECT IS_DISLIKE FROM OLD TABLE (
+                DELETE FROM REVIEW_LIKES WHERE REVIEW_ID = ? AND USER_ID = ? AND IS_DISLIKE = TRUE)""";
+    // H2 would pick the foreign key index on FILM_ID and sort; this one returns rows already in order
+    private static final String FILM_REVIEWS_BY_USEFUL = "SELECT * FROM REVIEWS USE INDEX (REVIEWS_FILM_USEFUL_IDX)\n";
+    private static final String ADD_USEFUL_DELTA = "UPDATE REVIEWS SET USEFUL = USEFUL + ? WHERE REVIEW_ID = ?";
 
     public List<Review> findAll() {
-        String findAllQuery = "SELECT * FROM REVIEWS";
+        String findAllQuery = "SELECT * FROM REVIEWS ORDER BY USEFUL DESC, REVIEW_ID";
         return jdbc.query(findAllQuery, mapper);
     }
 
+    public List<Review> findPage(Long filmId, PageCursor after, int limit) {
+        StringBuilder findPageQuery = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        if (filmId != null) {
+            findPageQuery.append(FILM_REVIEWS_BY_USEFUL).append("WHERE FILM_ID = ?\n");
+            params.add(filmId);
+        } else {
+            findPageQuery.append("SELECT * FROM REVIEWS WHERE TRUE\n");
+        }
+        if (after != null) {
+            findPageQuery.append("AND (USEFUL < ? OR (USEFUL = ? AND REVIEW_ID > ?))\n");
+            params.add(after.sortKeyOrThrow());
+            params.add(after.sortKeyOrThrow());
+            params.add(after.id());
+        }
+        findPageQuery.append(filmId != null ? "ORDER BY FILM_ID, " : "ORDER BY ").append("USEFUL DESC, REVIEW_ID LIMIT ?");
+        params.add(limit);
+        return jdbc.query(findPageQuery.toString(), mapper, params.toArray());
+    }
+
     public Review save(Review review) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         String insertReviewQuery = """
@@ -56,11 +82,11 @@ public class ReviewRepository {
 
     public Review update(Review review) {
         Long id = review.getId();
-        if (!existById(id)) throw new NotFoundException("There is no review with id=" + id);
         String updateReviewQuery = """
                 UPDATE REVIEWS SET CONTENT = ?, IS_POSITIVE = ? WHERE REVIEW_ID = ?""";
+        int updatedRows;
         try {
-            jdbc.update(updateReviewQuery,
+            updatedRows = jdbc.update(updateReviewQuery,
                     review.getContent(),
                     review.getIsPositive(),
                     id);
@@ -68,6 +94,7 @@ public class ReviewRepository {
             throw new ValidationException("User with id=" + review.getUserId() +
                                           " already have another review for film with filmId=" + review.getFilmId());
         }
+        if (updatedRows == 0) throw new NotFoundException("There is no review with id=" + id);
 
         return findById(review.getId()).orElseThrow(() -> new NotFoundException("There is no review with id=" + id));
     }
@@ -88,68 +115,75 @@ public class ReviewRepository {
         return updatedRows > 0;
     }
 
+    public void forEachId(LongConsumer consumer) {
+        jdbc.query("SELECT REVIEW_ID FROM REVIEWS", rs -> {
+            consumer.accept(rs.getLong("REVIEW_ID"));
+        });
+    }
+
+    public List<Long> findIdsByUserId(long userId) {
+        return jdbc.queryForList("SELECT REVIEW_ID FROM REVIEWS WHERE USER_ID = ?", Long.class, userId);
+    }
+
+    public List<Long> findIdsByFilmId(long filmId) {
+        return jdbc.queryForList("SELECT REVIEW_ID FROM REVIEWS WHERE FILM_ID = ?", Long.class, filmId);
+    }
+
     public boolean existById(long id) {
         String isReviewExist = "SELECT EXISTS(SELECT 1 FROM REVIEWS WHERE REVIEW_ID = ?)";
         return jdbc.queryForObject(isReviewExist, Boolean.class, id);
     }
 
     public List<Review> getReviewsByFilmId(long filmId, int count) {
-        String findAllByFilmIdQuery = "SELECT * FROM REVIEWS WHERE FILM_ID = ? LIMIT ?";
+        String findAllByFilmIdQuery = FILM_REVIEWS_BY_USEFUL + "WHERE FILM_ID = ? ORDER BY FILM_ID, USEFUL DESC, REVIEW_ID LIMIT ?";
         return jdbc.query(findAllByFilmIdQuery, mapper, filmId, count);
     }
 
+    @Transactional
     public boolean addReviewLike(long id, long userId) {
-        if (ifLikeExists(id, userId)) {
-            return false;
-        } else if (ifDislikeExists(id, userId)) {
-            jdbc.update(UPDATE_REVIEW_LIKE_ROW, false, id, userId);
-            return true;
-        } else {
-            jdbc.update(ADD_REVIEW_LIKE_DISLIKE_ROW, id, userId, false);
-            return true;
-        }
+        return applyVote(id, jdbc.queryForList(SET_VOTE, Boolean.class, id, userId, false), false);
     }
 
+    @Transactional
     public boolean addReviewDislike(long id, long userId) {
-        if (ifDislikeExists(id, userId)) {
-            return false;
-        } else if (ifLikeExists(id, userId)) {
-            jdbc.update(UPDATE_REVIEW_LIKE_ROW, true, id, userId);
-            return true;
-        } else {
-            jdbc.update(ADD_REVIEW_LIKE_DISLIKE_ROW, id, userId, true);
-            return true;
-        }
+        return applyVote(id, jdbc.queryForList(SET_VOTE, Boolean.class, id, userId, true), true);
     }
 
+    @Transactional
     public boolean deleteLikeDislikeRow(long id, long userId) {
-        int deleted = jdbc.update(DELETE_LIKE_DISLIKE_ROW, id, userId);
-        return deleted > 0;
+        return applyVote(id, jdbc.queryForList(DELETE_VOTE, Boolean.class, id, userId), null);
     }
 
+    @Transactional
     public boolean deleteDislikeRow(long id, long userId) {
-        if (ifDislikeExists(id, userId)) {
-            jdbc.update(DELETE_LIKE_DISLIKE_ROW, id, userId);
-            return true;
-        }
-        return false;
+        return applyVote(id, jdbc.queryForList(DELETE_DISLIKE, Boolean.class, id, userId), null);
     }
 
-    public int calculateUsefulByReviewId(long id) {
-        String calculateUsefulByReviewId = """
-                SELECT
-                	SUM(CASE WHEN IS_DISLIKE = FALSE THEN 1 ELSE 0 END) -
-                	SUM(CASE WHEN IS_DISLIKE = TRUE THEN 1 ELSE 0 END) AS USEFUL
-                FROM REVIEW_LIKES WHERE REVIEW_ID = ?""";
-        Integer useful = jdbc.queryForObject(calculateUsefulByReviewId, Integer.class, id);
-        return useful == null ? 0 : useful;
+    public int rebuildUseful() {
+        String rebuildUsefulQuery = """
+                UPDATE REVIEWS R SET USEFUL = COALESCE((
+                    SELECT SUM(CASE WHEN L.IS_DISLIKE THEN -1 ELSE 1 END)
+                    FROM REVIEW_LIKES L
+                    WHERE L.REVIEW_ID = R.REVIEW_ID), 0)""";
+        return jdbc.update(rebuildUsefulQuery);
     }
 
-    private boolean ifDislikeExists(long id, long userId) {
-        return jdbc.queryForObject(IS_REVIEW_LIKE_DISLIKE_EXIST, Boolean.class, id, userId, true);
+    /**
+     * Moves the review's usefulness by the difference between the replaced vote, if any, and the new one.
+     * Returns false if the vote didn't change.
+     */
+    private boolean applyVote(long id, List<Boolean> previous, Boolean isDislike) {
+        int delta = weight(isDislike) - (previous.isEmpty() ? 0 : weight(previous.get(0)));
+        if (delta != 0) {
+            jdbc.update(ADD_USEFUL_DELTA, delta, id);
+        }
+        return delta != 0;
     }
 
-    private boolean ifLikeExists(long id, long userId) {
-        return jdbc.queryForObject(IS_REVIEW_LIKE_DISLIKE_EXIST, Boolean.class, id, userId, false);
+    private static int weight(Boolean isDislike) {
+        if (isDislike == null) {
+            return 0;
+        }
+        return isDislike ? -1 : 1;
     }
 }
@@ -2,20 +2,29 @@ package ru.yandex.practicum.filmorate.repository;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.UserRowMapper;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
 
 @Repository
 @RequiredArgsConstructor
@@ -24,30 +33,102 @@ public class UserRepository {
     private final JdbcTemplate jdbc;
     private final UserRowMapper mapper;
 
+    private static final String INSERT_USER = "INSERT INTO USERS(EMAIL, LOGIN, NAME, BIRTHDAY) VALUES (?,?,?,?)";
+
     public List<User> findAll() {
         String findAllQuery = "SELECT * FROM USERS";
         return jdbc.query(findAllQuery, mapper);
     }
 
+    public List<User> findPage(long afterId, int limit) {
+        String findPageQuery = "SELECT * FROM USERS WHERE USER_ID > ? ORDER BY USER_ID LIMIT ?";
+        return jdbc.query(findPageQuery, mapper, afterId, limit);
+    }
+
+    public List<Long> findIdsAfter(long afterId, int limit) {
+        String findIdsAfterQuery = "SELECT USER_ID FROM USERS WHERE USER_ID > ? ORDER BY USER_ID LIMIT ?";
+        return jdbc.queryForList(findIdsAfterQuery, Long.class, afterId, limit);
+    }
+
+    public long count() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM USERS", Long.class);
+    }
+
+    public List<User> findAllByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String findAllByIdsQuery = "SELECT * FROM USERS WHERE USER_ID IN (%s) ORDER BY USER_ID"
+                .formatted(String.join(",", Collections.nCopies(ids.size(), "?")));
+        return jdbc.query(findAllByIdsQuery, mapper, ids.toArray());
+    }
+
+    public void forEachFriendship(BiConsumer<Integer, Integer> consumer) {
+        jdbc.query("SELECT USER_ID, FRIEND_ID FROM FRIENDS", rs -> {
+            consumer.accept(rs.getInt("USER_ID"), rs.getInt("FRIEND_ID"));
+        });
+    }
+
     public User save(User user) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
-        String insertQuery = "INSERT INTO USERS(EMAIL, LOGIN, NAME, BIRTHDAY) VALUES (?,?,?,?)";
 
         jdbc.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(insertQuery, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, user.getEmail());
-            ps.setString(2, user.getLogin());
-            ps.setString(3, user.getName());
-            ps.setDate(4, Date.valueOf(user.getBirthday()));
+            PreparedStatement ps = connection.prepareStatement(INSERT_USER, Statement.RETURN_GENERATED_KEYS);
+            setUser(ps, user);
             return ps;
         }, keyHolder);
         user.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
         return user;
     }
 
+    /**
+     * Inserts users in one batch and sets their generated ids.
+     */
+    @Transactional
+    public List<User> saveAll(List<User> users) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_USER, new String[]{"USER_ID"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setUser(ps, users.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).get("USER_ID")).longValue());
+        }
+        return users;
+    }
+
+    @Transactional
     public boolean deleteById(long id) {
         jdbc.update("MERGE INTO DELETED_USER_IDS(DELETED_USER_ID) VALUES (?)", id);
 
+        // user's likes and review votes go away by cascade, so their share of the counters is taken out first
+        String subtractUserLikesQuery = """
+                MERGE INTO FILM_RATING_STATS S
+                USING (SELECT FILM_ID, MARK FROM FILM_LIKES WHERE USER_ID = ?) L
+                ON S.FILM_ID = L.FILM_ID
+                WHEN MATCHED THEN UPDATE SET
+                    MARK_SUM = S.MARK_SUM - COALESCE(L.MARK, 0),
+                    MARK_COUNT = S.MARK_COUNT - CASE WHEN L.MARK IS NULL THEN 0 ELSE 1 END,
+                    LIKE_COUNT = S.LIKE_COUNT - 1""";
+        jdbc.update(subtractUserLikesQuery, id);
+
+        String subtractUserReviewVotesQuery = """
+                MERGE INTO REVIEWS R
+                USING (SELECT REVIEW_ID, IS_DISLIKE FROM REVIEW_LIKES WHERE USER_ID = ?) L
+                ON R.REVIEW_ID = L.REVIEW_ID
+                WHEN MATCHED THEN UPDATE SET
+                    USEFUL = R.USEFUL + CASE WHEN L.IS_DISLIKE THEN 1 ELSE -1 END""";
+        jdbc.update(subtractUserReviewVotesQuery, id);
+
         String deleteById = "DELETE FROM USERS WHERE USER_ID = ?";
         int updatedRows = jdbc.update(deleteById, id);
         return updatedRows > 0;
@@ -55,17 +136,16 @@ public class UserRepository {
 
     public User update(User user) {
         Long id = user.getId();
-        if (!existById(id)) throw new NotFoundException("There is no user with id=" + id);
-
         String updateQuery = """
                 UPDATE USERS SET EMAIL = ?, LOGIN = ?, NAME = ?, BIRTHDAY = ?
                 WHERE USER_ID = ?""";
-        jdbc.update(updateQuery,
+        int updatedRows = jdbc.update(updateQuery,
                 user.getEmail(),
                 user.getLogin(),
                 user.getName(),
                 user.getBirthday(),
                 id);
+        if (updatedRows == 0) throw new NotFoundException("There is no user with id=" + id);
         return user;
     }
 
@@ -79,14 +159,16 @@ public class UserRepository {
         }
     }
 
-    public boolean existById(long id) {
-        String isExistByIdQuery = "SELECT EXISTS(SELECT 1 FROM USERS WHERE USER_ID = ?)";
-        return jdbc.queryForObject(isExistByIdQuery, Boolean.class, id);
+    public void forEachId(LongConsumer consumer) {
+        jdbc.query("SELECT USER_ID FROM USERS", rs -> {
+            consumer.accept(rs.getLong("USER_ID"));
+        });
     }
 
-    public boolean existDeletedUserById(long id) {
-        String query = "SELECT EXISTS(SELECT 1 FROM DELETED_USER_IDS WHERE DELETED_USER_ID = ?)";
-        return jdbc.queryForObject(query, Boolean.class, id);
+    public void forEachDeletedId(LongConsumer consumer) {
+        jdbc.query("SELECT DELETED_USER_ID FROM DELETED_USER_IDS", rs -> {
+            consumer.accept(rs.getLong("DELETED_USER_ID"));
+        });
     }
 
     public boolean addFriendshipRow(long id, long friendId) {
@@ -107,10 +189,10 @@ public class UserRepository {
         return deletedRows > 0;
     }
 
-    public List<User> getFriendsByUserId(long id) {
-        String findFriendsByUserIdQuery = """
-                SELECT * FROM USERS WHERE USER_ID IN
-                    (SELECT FRIEND_ID FROM FRIENDS WHERE USER_ID = ?)""";
-        return jdbc.query(findFriendsByUserIdQuery, mapper, id);
+    private static void setUser(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getEmail());
+        ps.setString(2, user.getLogin());
+        ps.setString(3, user.getName());
+        ps.setDate(4, Date.valueOf(user.getBirthday()));
     }
 }
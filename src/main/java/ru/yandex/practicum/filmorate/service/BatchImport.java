@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.utils.JsonStreamReader;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports items in chunks. Every item is validated on its own and the valid items of a chunk are
+ * saved together; if a chunk breaks a database constraint, its items are saved one by one so that
+ * only the offending ones fail.
+ */
+final class BatchImport<T> {
+    private final Validator validator;
+    private final Consumer<T> check;
+    private final Function<List<T>, List<Long>> save;
+    private final String conflictMessage;
+
+    private final List<Long> ids = new ArrayList<>();
+    private final List<BatchResult.ItemError> errors = new ArrayList<>();
+    private final List<T> chunk = new ArrayList<>();
+    private final List<Integer> chunkIndexes = new ArrayList<>();
+
+    BatchImport(Validator validator, Consumer<T> check, Function<List<T>, List<Long>> save, String conflictMessage) {
+        this.validator = validator;
+        this.check = check;
+        this.save = save;
+        this.conflictMessage = conflictMessage;
+    }
+
+    BatchResult run(Iterator<JsonStreamReader.Item<T>> items, int chunkSize) {
+        while (items.hasNext()) {
+            JsonStreamReader.Item<T> item = items.next();
+            ids.add(null);
+            String error = item.error() != null ? item.error() : validate(item.value());
+            if (error != null) {
+                errors.add(new BatchResult.ItemError(item.index(), error));
+                continue;
+            }
+            chunk.add(item.value());
+            chunkIndexes.add(item.index());
+            if (chunk.size() == chunkSize) {
+                saveChunk();
+            }
+        }
+        saveChunk();
+        errors.sort(Comparator.comparingInt(BatchResult.ItemError::index));
+        int created = (int) ids.stream().filter(Objects::nonNull).count();
+        return new BatchResult(created, ids, errors);
+    }
+
+    private String validate(T value) {
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        try {
+            check.accept(value);
+            return null;
+        } catch (ValidationException | NotFoundException e) {
+            return e.getMessage();
+        }
+    }
+
+    private void saveChunk() {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> saved = save.apply(chunk);
+            for (int i = 0; i < saved.size(); i++) {
+                ids.set(chunkIndexes.get(i), saved.get(i));
+            }
+        } catch (DataIntegrityViolationException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    ids.set(chunkIndexes.get(i), save.apply(List.of(chunk.get(i))).get(0));
+                } catch (DataIntegrityViolationException single) {
+                    errors.add(new BatchResult.ItemError(chunkIndexes.get(i), conflictMessage));
+                }
+            }
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+}
@@ -0,0 +1,354 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.repository.BulkLoadRepository;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Offline loader of likes, friendships and reviews from CSV files, run with
+ * {@code --filmorate.load=<directory>} instead of the web application. The directory may hold
+ * likes.csv ({@code film_id,user_id[,mark]}), friends.csv ({@code user_id,friend_id}) and reviews.csv
+ * ({@code user_id,film_id,is_positive,content}), one record per line. A record replaces the stored row
+ * with the same key; of two records with the same key in a file the later one wins only when both fall
+ * into the same chunk. Every file is mapped into memory in chunks split at line breaks, and the chunks
+ * are parsed and merged into the database in parallel, each by its own JDBC batches; a batch that
+ * collides with another chunk inserting the same key is merged again. Foreign key checks
+ * and secondary indexes of the loaded tables are off during the load; rows that reference missing films
+ * or users are deleted afterward, then the indexes are created and the checks are turned back on.
+ * Then rating stats are rebuilt and a throughput report is logged.
+ * <p>
+ * The loader runs in the context of {@link ru.yandex.practicum.filmorate.BulkLoadApplication}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty("filmorate.load")
+public class BulkLoadService implements ApplicationRunner {
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 64 << 20;
+    private static final double MEGABYTE = 1 << 20;
+    private static final int MAX_BATCH_RETRIES = 3;
+
+    private final BulkLoadRepository bulkLoadRepository;
+    private final FilmRepository filmRepository;
+    private final ReentrantLock retryLock = new ReentrantLock();
+
+    @Value("${filmorate.load}")
+    private Path directory;
+
+    @Value("${filmorate.loader.threads:0}")
+    private int threads;
+
+    @Value("${filmorate.loader.batch-size:5000}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        load(directory);
+    }
+
+    public void load(Path directory) {
+        long started = System.nanoTime();
+        int workers = threads > 0 ? threads : Math.min(Runtime.getRuntime().availableProcessors(), 8);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<FileReport> reports = new ArrayList<>();
+        Map<String, Integer> orphans;
+        long loaded;
+        bulkLoadRepository.disableReferentialIntegrity();
+        bulkLoadRepository.dropIndexes();
+        try {
+            for (Source source : Source.values()) {
+                Path file = directory.resolve(source.fileName);
+                if (Files.isRegularFile(file)) {
+                    reports.add(loadFile(file, source, executor, workers));
+                } else {
+                    log.info("There is no {} in {}", source.fileName, directory);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            executor.shutdownNow();
+            loaded = System.nanoTime();
+            orphans = bulkLoadRepository.deleteOrphans();
+            bulkLoadRepository.createIndexes();
+            bulkLoadRepository.enableReferentialIntegrity();
+        }
+        long indexed = System.nanoTime();
+        int films = filmRepository.rebuildRatingStats();
+        bulkLoadRepository.analyze();
+        long finished = System.nanoTime();
+
+        log.info("Loaded {} with {} threads:", directory, workers);
+        reports.forEach(report -> log.info(report.format()));
+        orphans.forEach((table, deleted) -> log.info("Deleted {} rows of {} referencing missing films or users", deleted, table));
+        log.info(String.format("Checked rows and created indexes in %.2f s", seconds(indexed - loaded)));
+        log.info(String.format("Rebuilt rating stats of %d films in %.2f s, %.2f s in total",
+                films, seconds(finished - indexed), seconds(finished - started)));
+    }
+
+    private FileReport loadFile(Path file, Source source, ExecutorService executor, int workers) throws IOException {
+        long started = System.nanoTime();
+        List<Future<long[]>> chunks = new ArrayList<>();
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (workers * 4L) + 1));
+            long start = 0;
+            while (start < size) {
+                long end = lineEnd(channel, Math.min(start + chunkSize, size));
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                chunks.add(executor.submit(() -> loadChunk(data, source)));
+                start = end;
+            }
+        }
+        long rows = 0;
+        long skipped = 0;
+        try {
+            for (Future<long[]> chunk : chunks) {
+                long[] counts = chunk.get();
+                rows += counts[0];
+                skipped += counts[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading " + file, e);
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+        return new FileReport(source.fileName, rows, skipped, size, System.nanoTime() - started);
+    }
+
+    /**
+     * Parses the records of a chunk and merges them in batches. Returns the numbers of merged and
+     * skipped lines; a header or a malformed line is skipped.
+     */
+    private long[] loadChunk(ByteBuffer data, Source source) {
+        Batch batch = source.batches.apply(batchSize);
+        CsvCursor cursor = new CsvCursor(data);
+        long rows = 0;
+        long skipped = 0;
+        while (cursor.nextLine()) {
+            try {
+                if (!cursor.atNumber()) {
+                    throw new IllegalArgumentException("Not a record");
+                }
+                batch.read(cursor);
+                cursor.endLine();
+                batch.count++;
+            } catch (IllegalArgumentException e) {
+                skipped++;
+                cursor.skipLine();
+                continue;
+            }
+            if (batch.count == batchSize) {
+                write(batch);
+                rows += batch.count;
+                batch.count = 0;
+            }
+        }
+        if (batch.count > 0) {
+            write(batch);
+            rows += batch.count;
+        }
+        return new long[]{rows, skipped};
+    }
+
+    /**
+     * Merges a batch. MERGE isn't atomic, so when another chunk inserts a key of the batch at the same
+     * time the batch fails on the primary key; merged again, those keys are updated. Retries run one at a
+     * time, and since a key can collide only until it's stored, a batch that keeps failing breaks a
+     * constraint of its own.
+     */
+    private void write(Batch batch) {
+        try {
+            batch.write(bulkLoadRepository);
+            return;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Merging a batch of {} rows again: {}", batch.count, e.getMessage());
+        }
+        retryLock.lock();
+        try {
+            for (int retry = 1; ; retry++) {
+                try {
+                    batch.write(bulkLoadRepository);
+                    return;
+                } catch (DataIntegrityViolationException e) {
+                    if (retry == MAX_BATCH_RETRIES) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            retryLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the position just past the first line break at or after the position.
+     */
+    private static long lineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long size = channel.size();
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private enum Source {
+        LIKES("likes.csv", LikesBatch::new),
+        FRIENDS("friends.csv", FriendsBatch::new),
+        REVIEWS("reviews.csv", ReviewsBatch::new);
+
+        private final String fileName;
+        private final IntFunction<Batch> batches;
+
+        Source(String fileName, IntFunction<Batch> batches) {
+            this.fileName = fileName;
+            this.batches = batches;
+        }
+    }
+
+    /**
+     * Records parsed into columns; read fills the slot at count, which the caller then takes.
+     */
+    private abstract static class Batch {
+        int count;
+
+        abstract void read(CsvCursor cursor);
+
+        abstract void write(BulkLoadRepository repository);
+    }
+
+    private static final class LikesBatch extends Batch {
+        private final long[] filmIds;
+        private final long[] userIds;
+        private final double[] marks;
+
+        LikesBatch(int size) {
+            filmIds = new long[size];
+            userIds = new long[size];
+            marks = new double[size];
+        }
+
+        @Override
+        void read(CsvCursor cursor) {
+            filmIds[count] = cursor.nextLong();
+            userIds[count] = cursor.nextLong();
+            double mark = cursor.atLineEnd() ? Double.NaN : cursor.nextDouble();
+            if (mark < 1 || mark > 10) {
+                throw new IllegalArgumentException("Mark must be between 1 and 10 inclusive");
+            }
+            marks[count] = mark;
+        }
+
+        @Override
+        void write(BulkLoadRepository repository) {
+            repository.mergeLikes(filmIds, userIds, marks, count);
+        }
+    }
+
+    private static final class FriendsBatch extends Batch {
+        private final long[] userIds;
+        private final long[] friendIds;
+
+        FriendsBatch(int size) {
+            userIds = new long[size];
+            friendIds = new long[size];
+        }
+
+        @Override
+        void read(CsvCursor cursor) {
+            userIds[count] = cursor.nextLong();
+            friendIds[count] = cursor.nextLong();
+            if (userIds[count] == friendIds[count]) {
+                throw new IllegalArgumentException("User can't be their own friend");
+            }
+        }
+
+        @Override
+        void write(BulkLoadRepository repository) {
+            repository.mergeFriendships(userIds, friendIds, count);
+        }
+    }
+
+    private static final class ReviewsBatch extends Batch {
+        private static final int MAX_CONTENT_LENGTH = 10000;
+
+        private final long[] userIds;
+        private final long[] filmIds;
+        private final boolean[] positive;
+        private final String[] contents;
+
+        ReviewsBatch(int size) {
+            userIds = new long[size];
+            filmIds = new long[size];
+            positive = new boolean[size];
+            contents = new String[size];
+        }
+
+        @Override
+        void read(CsvCursor cursor) {
+            userIds[count] = cursor.nextLong();
+            filmIds[count] = cursor.nextLong();
+            positive[count] = cursor.nextBoolean();
+            String content = cursor.nextText();
+            if (content.isBlank() || content.length() > MAX_CONTENT_LENGTH) {
+                throw new IllegalArgumentException("Content must not be blank or longer than " + MAX_CONTENT_LENGTH);
+            }
+            contents[count] = content;
+        }
+
+        @Override
+        void write(BulkLoadRepository repository) {
+            repository.mergeReviews(userIds, filmIds, positive, contents, count);
+        }
+    }
+
+    private record FileReport(String fileName, long rows, long skipped, long bytes, long nanos) {
+        String format() {
+            double seconds = seconds(nanos);
+            return String.format("%-12s %,14d rows %,10d skipped %10.1f MB %8.2f s %,12.0f rows/s %8.1f MB/s",
+                    fileName, rows, skipped, bytes / MEGABYTE, seconds, rows / seconds, bytes / MEGABYTE / seconds);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads comma-separated fields line by line straight from a buffer, numbers without creating strings.
+ * A field that can't be read throws IllegalArgumentException; the caller then skips the line.
+ */
+final class CsvCursor {
+    private static final double[] FRACTION_SCALES = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private byte[] text = new byte[256];
+
+    CsvCursor(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Moves to the start of the next non-empty line; returns false at the end of the buffer.
+     */
+    boolean nextLine() {
+        while (position < limit && isLineBreak(buffer.get(position))) {
+            position++;
+        }
+        return position < limit;
+    }
+
+    /**
+     * Whether the line starts with a number, which tells records from a header.
+     */
+    boolean atNumber() {
+        byte b = buffer.get(position);
+        return b >= '0' && b <= '9' || b == '-';
+    }
+
+    boolean atLineEnd() {
+        return position >= limit || isLineBreak(buffer.get(position));
+    }
+
+    long nextLong() {
+        boolean negative = position < limit && buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            position++;
+            digits++;
+        }
+        if (digits == 0 || digits > 18) {
+            throw new IllegalArgumentException("Not a number");
+        }
+        endField();
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads a decimal number with up to nine fraction digits, or NaN for an empty field.
+     */
+    double nextDouble() {
+        if (atFieldEnd()) {
+            endField();
+            return Double.NaN;
+        }
+        long integer = 0;
+        int digits = 0;
+        while (position < limit && isDigit(buffer.get(position))) {
+            integer = integer * 10 + (buffer.get(position++) - '0');
+            digits++;
+        }
+        long fraction = 0;
+        int scale = 0;
+        if (position < limit && buffer.get(position) == '.') {
+            position++;
+            while (position < limit && isDigit(buffer.get(position)) && scale < FRACTION_SCALES.length - 1) {
+                fraction = fraction * 10 + (buffer.get(position++) - '0');
+                scale++;
+            }
+        }
+        if (digits + scale == 0 || digits > 18) {
+            throw new IllegalArgumentException("Not a number");
+        }
+        endField();
+        return integer + fraction / FRACTION_SCALES[scale];
+    }
+
+    boolean nextBoolean() {
+        boolean value;
+        if (matches("true") || matches("1")) {
+            value = true;
+        } else if (matches("false") || matches("0")) {
+            value = false;
+        } else {
+            throw new IllegalArgumentException("Not a boolean");
+        }
+        endField();
+        return value;
+    }
+
+    /**
+     * Reads the rest of the line as text. Text in double quotes may contain commas, and two double
+     * quotes stand for one.
+     */
+    String nextText() {
+        int length = 0;
+        if (position < limit && buffer.get(position) == '"') {
+            position++;
+            while (true) {
+                if (position >= limit || isLineBreak(buffer.get(position))) {
+                    throw new IllegalArgumentException("Unclosed quote");
+                }
+                byte b = buffer.get(position++);
+                if (b == '"') {
+                    if (position < limit && buffer.get(position) == '"') {
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+                length = put(length, b);
+            }
+            if (!atLineEnd()) {
+                throw new IllegalArgumentException("Unexpected text after quote");
+            }
+        } else {
+            while (!atLineEnd()) {
+                length = put(length, buffer.get(position++));
+            }
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that the line has no fields left.
+     */
+    void endLine() {
+        if (!atLineEnd()) {
+            throw new IllegalArgumentException("Too many fields");
+        }
+    }
+
+    void skipLine() {
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+    }
+
+    private boolean matches(String value) {
+        int length = value.length();
+        if (position + length > limit) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((buffer.get(position + i) | 0x20) != value.charAt(i)) {
+                return false;
+            }
+        }
+        int end = position + length;
+        if (end < limit && buffer.get(end) != ',' && !isLineBreak(buffer.get(end))) {
+            return false;
+        }
+        position = end;
+        return true;
+    }
+
+    private int put(int length, byte b) {
+        if (length == text.length) {
+            text = Arrays.copyOf(text, length * 2);
+        }
+        text[length] = b;
+        return length + 1;
+    }
+
+    private boolean atFieldEnd() {
+        return atLineEnd() || buffer.get(position) == ',';
+    }
+
+    private void endField() {
+        if (atLineEnd()) {
+            return;
+        }
+        if (buffer.get(position) != ',') {
+            throw new IllegalArgumentException("Unexpected character");
+        }
+        position++;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+}
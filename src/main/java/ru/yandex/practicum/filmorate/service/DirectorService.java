@@ -4,44 +4,57 @@ import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmDtoCache;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.repository.DirectorRepository;
 
 import java.util.List;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class DirectorService {
     private final DirectorRepository repository;
+    private final FilmSearchIndex searchIndex;
+    private final ReferenceDataCache referenceData;
+    private final FilmDtoCache filmCache;
 
     public List<Director> getAllDirectors() {
-        return repository.findAll();
+        return referenceData.getAllDirectors();
     }
 
     public Director getDirectorById(@Positive int id) {
-        Optional<Director> directorById = repository.findById(id);
-        if (directorById.isEmpty()) {
-            throw new NotFoundException("There is no director with id=" + id);
-        } else {
-            return directorById.get();
-        }
+        return referenceData.getDirector(id)
+                .orElseThrow(() -> new NotFoundException(String.format("Director with ID %d not found", id)));
     }
 
     public Director addDirector(Director director) {
-        return repository.addDirector(director);
+        Director added = repository.addDirector(director);
+        referenceData.putDirector(added);
+        searchIndex.putDirector(added.getId(), added.getName());
+        return added;
     }
 
     public void addFilmDirector(Director director, Film film) {
         repository.addFilmDirector(director, film);
+        searchIndex.addFilmDirector(film.getId(), director.getId());
+        filmCache.invalidate(film.getId());
     }
 
     public void deleteDirector(int id) {
         repository.deleteDirector(id);
+        referenceData.removeDirector(id);
+        filmCache.invalidateByDirector(id);
+        searchIndex.removeDirector(id);
     }
 
     public Director updateDirector(Director director) {
-        return repository.updateDirector(director);
+        Director updated = repository.updateDirector(director);
+        referenceData.putDirector(updated);
+        filmCache.invalidateByDirector(updated.getId());
+        searchIndex.putDirector(updated.getId(), updated.getName());
+        return updated;
     }
 }
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.repository.EventArchive;
+import ru.yandex.practicum.filmorate.repository.EventRepository;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves events older than the retention period from EVENTS to the archive. Events are archived by
+ * contiguous ranges of event ids, and a range is deleted from the table only after its segment is
+ * written, so a run interrupted in between leaves rows that the next run just deletes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventRetentionService {
+
+    private final EventRepository eventRepository;
+    private final EventArchive eventArchive;
+
+    @Value("${filmorate.events.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${filmorate.events.archive.segment-size:100000}")
+    private int segmentSize;
+
+    private ExecutorService archiver;
+
+    @PostConstruct
+    void init() {
+        archiver = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "event-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        archiver.shutdown();
+    }
+
+    @Scheduled(cron = "${filmorate.events.archive.cron:0 30 4 * * *}")
+    public void runScheduled() {
+        // a run reads and compresses every expired event, the scheduler thread is left to the short periodic tasks
+        archiver.execute(() -> {
+            try {
+                archiveExpired();
+            } catch (RuntimeException e) {
+                log.error("Event archiving failed", e);
+            }
+        });
+    }
+
+    public synchronized int archiveExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        long lastEventId = eventRepository.findLastEventIdCreatedBefore(cutoff);
+        long archivedUpTo = eventArchive.getMaxEventId();
+        eventRepository.deleteUpTo(archivedUpTo);
+
+        int archived = 0;
+        List<Event> events;
+        while (!(events = eventRepository.getRange(archivedUpTo, lastEventId, segmentSize)).isEmpty()) {
+            eventArchive.append(events);
+            archivedUpTo = events.get(events.size() - 1).getEventId();
+            eventRepository.deleteUpTo(archivedUpTo);
+            archived += events.size();
+        }
+        log.info("Archived {} events created before {} days ago", archived, retentionDays);
+        return archived;
+    }
+}
@@ -1,22 +1,29 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 import ru.yandex.practicum.filmorate.dto.EventDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.index.EntityIdIndex;
+import ru.yandex.practicum.filmorate.index.TimelineStore;
 import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.repository.EventArchive;
 import ru.yandex.practicum.filmorate.repository.EventRepository;
 import ru.yandex.practicum.filmorate.utils.EventType;
 import ru.yandex.practicum.filmorate.utils.OperationType;
+import ru.yandex.practicum.filmorate.utils.PageCursor;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -24,28 +31,119 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class EventService {
 
+    private static final int STREAM_PAGE_SIZE = 1000;
+
     private final EventRepository eventRepository;
+    private final EventArchive eventArchive;
+    private final EventWriter eventWriter;
     private final ValidationService validationService;
+    private final TimelineStore timelineStore;
+    private final EntityIdIndex entityIds;
+
+    @PostConstruct
+    void subscribeTimelines() {
+        eventWriter.onWritten(timelineStore::appendAll);
+    }
 
     public List<EventDTO> getUserFeed(@Positive long userId) {
+        return findUserFeed(userId, 0, Integer.MAX_VALUE);
+    }
+
+    public List<EventDTO> getUserFeed(@Positive long userId, Long afterEventId, Integer limit) {
+        return findUserFeed(userId, afterEventId == null ? 0 : afterEventId, Page.size(limit));
+    }
+
+    private List<EventDTO> findUserFeed(long userId, long afterEventId, int limit) {
         validationService.validateUserById(userId);
-        return eventRepository.getByUserId(userId).stream()
+        eventWriter.flushFor(userId);
+        List<Event> events = eventRepository.getByUserId(userId, afterEventId, limit);
+        if (afterEventId < eventArchive.getMaxEventId()) {
+            events = withArchived(eventArchive.findByUserId(userId, afterEventId, limit), events, limit);
+        }
+        return events.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Merges archived events into the stored ones read before them. The table is read first: a range
+     * archived in between is then already in the archive, and a range being archived can briefly be in
+     * both, so events are deduplicated by id.
+     */
+    private static List<Event> withArchived(List<Event> archived, List<Event> stored, long limit) {
+        return Stream.concat(archived.stream(), stored.stream())
+                .collect(Collectors.toMap(Event::getEventId, Function.identity(), (a, s) -> a, TreeMap::new))
+                .values().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    private boolean isActiveUser(long userId) {
+        return !entityIds.deletedUsers().contains(userId);
+    }
+
+    public List<EventDTO> getFriendsTimeline(@Positive long userId, Long beforeEventId, Integer limit) {
+        validationService.validateUserById(userId);
+        return timelineStore.getTimeline(userId, beforeEventId == null ? Long.MAX_VALUE : beforeEventId, Page.size(limit))
+                .stream()
+                .map(this::convertToDto)
+                .toList();
+    }
+
     public List<EventDTO> getAllEvents() {
-        return eventRepository.getAllEvents().stream()
+        eventWriter.flush();
+        List<Event> events = eventRepository.getAllEvents();
+        if (eventArchive.getMaxEventId() > 0) {
+            events = withArchived(eventArchive.findAll(0, Integer.MAX_VALUE, this::isActiveUser), events, Long.MAX_VALUE);
+        }
+        return events.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
 
-    public EventDTO createEvent(EventDTO eventDto) {
+    public void streamAllEvents(Consumer<EventDTO> consumer) {
+        eventWriter.flush();
+        long streamedUpTo = 0;
+        long archivedUpTo;
+        // ranges archived while the archive is streamed are taken in the next round, before the table
+        while ((archivedUpTo = eventArchive.getMaxEventId()) > streamedUpTo) {
+            streamArchived(streamedUpTo, archivedUpTo, consumer);
+            streamedUpTo = archivedUpTo;
+        }
+        // the table is read by pages of ids, so no connection is held while a page is written to a slow client
+        List<Event> page;
+        do {
+            page = eventRepository.getPage(streamedUpTo, STREAM_PAGE_SIZE);
+            if (!page.isEmpty()) {
+                streamedUpTo = page.get(page.size() - 1).getEventId();
+            }
+            page.stream().map(this::convertToDto).forEach(consumer);
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    private void streamArchived(long afterEventId, long upToEventId, Consumer<EventDTO> consumer) {
+        try (Stream<Event> events = eventArchive.streamAll(afterEventId, this::isActiveUser)) {
+            events.takeWhile(event -> event.getEventId() <= upToEventId).map(this::convertToDto).forEach(consumer);
+        }
+    }
+
+    public Page<EventDTO> getEventsPage(String after, Integer limit) {
+        eventWriter.flush();
+        int size = Page.size(limit);
+        long afterEventId = after == null ? 0 : PageCursor.parse(after).id();
+        List<Event> events = eventRepository.getPage(afterEventId, size);
+        if (afterEventId < eventArchive.getMaxEventId()) {
+            events = withArchived(eventArchive.findAll(afterEventId, size, this::isActiveUser), events, size);
+        }
+        return Page.of(events.stream().map(this::convertToDto).toList(), size,
+                event -> PageCursor.of(event.getEventId()));
+    }
+
+    public void createEvent(EventDTO eventDto) {
         Event event = convertToEntity(eventDto);
         validateEvent(event);
-        Event createdEvent = eventRepository.create(event);
-        log.info("Created event: {}", createdEvent);
-        return convertToDto(createdEvent);
+        eventWriter.publish(event);
+        log.debug("Published event: {}", event);
     }
 
     private void validateEvent(Event event) {
@@ -62,38 +160,36 @@ public class EventService {
 
     }
 
-    public EventDTO createFriendEvent(long userId, long friendId, OperationType operation) {
+    public void createFriendEvent(long userId, long friendId, OperationType operation) {
         EventDTO eventDto = new EventDTO();
         eventDto.setUserId(userId);
         eventDto.setEventType(EventType.FRIEND);
         eventDto.setOperation(operation);
         eventDto.setEntityId(friendId);
-        return createEvent(eventDto);
+        createEvent(eventDto);
     }
 
-    public EventDTO createLikeEvent(long userId, long filmId, OperationType operation) {
+    public void createLikeEvent(long userId, long filmId, OperationType operation) {
         EventDTO eventDto = new EventDTO();
         eventDto.setUserId(userId);
         eventDto.setEventType(EventType.LIKE);
         eventDto.setOperation(operation);
         eventDto.setEntityId(filmId);
-        return createEvent(eventDto);
+        createEvent(eventDto);
     }
 
-    public EventDTO createReviewEvent(long userId, long reviewId, OperationType operation) {
+    public void createReviewEvent(long userId, long reviewId, OperationType operation) {
         EventDTO eventDto = new EventDTO();
         eventDto.setUserId(userId);
         eventDto.setEventType(EventType.REVIEW);
         eventDto.setOperation(operation);
         eventDto.setEntityId(reviewId);
-        return createEvent(eventDto);
+        createEvent(eventDto);
     }
 
     public EventDTO convertToDto(Event event) {
-        long timestamp = event.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-
         return new EventDTO(
-                timestamp,
+                event.getTimestamp(),
                 event.getUserId(),
                 EventType.valueOf(event.getEventType()),
                 OperationType.valueOf(event.getOperation()),
@@ -103,19 +199,13 @@ public class EventService {
     }
 
     private Event convertToEntity(EventDTO eventDto) {
-        LocalDateTime createdAt = eventDto.getTimestamp() != null
-                ? Instant.ofEpochMilli(eventDto.getTimestamp())
-                .atZone(ZoneId.systemDefault())
-                .toLocalDateTime()
-                : LocalDateTime.now();
-
         return Event.builder()
                 .eventId(eventDto.getEventId())
                 .userId(eventDto.getUserId())
                 .eventType(eventDto.getEventType().name())
                 .operation(eventDto.getOperation().name())
                 .entityId(eventDto.getEntityId())
-                .createdAt(createdAt)
+                .timestamp(eventDto.getTimestamp() != null ? eventDto.getTimestamp() : System.currentTimeMillis())
                 .build();
     }
 }
@@ -0,0 +1,243 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.repository.EventRepository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Writes feed events in batches off the request thread. Events wait in a bounded queue for at most
+ * the flush interval, or less once a full batch has gathered; when the queue is full, the publisher
+ * writes the backlog itself. Batches are written one at a time in queue order, so event ids follow
+ * the order events were published in. Events that failed to be written are kept and retried first
+ * with the next flush, only events of users deleted in the meantime are dropped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventWriter {
+    private final EventRepository eventRepository;
+
+    @Value("${filmorate.events.queue-capacity:10000}")
+    private int capacity;
+
+    @Value("${filmorate.events.flush-size:500}")
+    private int flushSize;
+
+    @Value("${filmorate.events.flush-interval-ms:20}")
+    private long flushIntervalMs;
+
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentHashMap<Long, Integer> pendingByUser = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // guarded by flushLock
+    private final Deque<Event> retries = new ArrayDeque<>();
+    private final AtomicInteger retrying = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<Consumer<List<Event>>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = new Thread(this::run, "event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        flush();
+        log.info("Event writer is stopped");
+    }
+
+    /**
+     * Registers a listener called on the writer thread with every batch of events once they are written.
+     */
+    public void onWritten(Consumer<List<Event>> listener) {
+        listeners.add(listener);
+    }
+
+    public void publish(Event event) {
+        if (!running) {
+            notifyListeners(List.of(eventRepository.create(event)));
+            return;
+        }
+        while (!tryReserve()) {
+            if (!flush()) {
+                throw new IllegalStateException("Feed events can't be written, the queue is full");
+            }
+        }
+        pendingByUser.merge(event.getUserId(), 1, Integer::sum);
+        queue.offer(event);
+        if (queued.get() >= flushSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Makes sure every event the user published so far is written.
+     */
+    public void flushFor(long userId) {
+        if (pendingByUser.containsKey(userId)) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the queued events. Returns false if some of them failed and are left for the next flush.
+     */
+    public boolean flush() {
+        flushLock.lock();
+        try {
+            while (!retries.isEmpty() || !queue.isEmpty()) {
+                if (!writeBatch()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(queued.get(), retrying.get(), dropped.get());
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        boolean flushed = true;
+        while (running) {
+            // after a failure the retried events wait for the next interval, even if a full batch has gathered
+            if (!flushed || queued.get() < flushSize) {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+            try {
+                flushed = flush();
+            } catch (RuntimeException e) {
+                flushed = false;
+                log.error("Failed to write events", e);
+            }
+        }
+    }
+
+    private boolean tryReserve() {
+        int size = queued.get();
+        while (size < capacity) {
+            if (queued.compareAndSet(size, size + 1)) {
+                return true;
+            }
+            size = queued.get();
+        }
+        return false;
+    }
+
+    /**
+     * Writes the next batch, retried events first. Returns false if some events failed and were kept.
+     */
+    private boolean writeBatch() {
+        List<Event> batch = new ArrayList<>(flushSize);
+        Event event;
+        while (batch.size() < flushSize && (event = retries.poll()) != null) {
+            batch.add(event);
+        }
+        while (batch.size() < flushSize && (event = queue.poll()) != null) {
+            batch.add(event);
+        }
+        List<Event> written = batch;
+        List<Event> done = batch;
+        List<Event> failed = new ArrayList<>();
+        try {
+            eventRepository.createAll(batch);
+        } catch (DataAccessException e) {
+            // a user deleted while their events were queued fails the whole batch, so the rest go one by one
+            written = new ArrayList<>(batch.size());
+            done = new ArrayList<>(batch.size());
+            for (Event single : batch) {
+                switch (writeSingle(single)) {
+                    case WRITTEN -> {
+                        written.add(single);
+                        done.add(single);
+                    }
+                    case DROPPED -> {
+                        dropped.incrementAndGet();
+                        done.add(single);
+                    }
+                    case FAILED -> failed.add(single);
+                }
+            }
+        }
+        for (int i = failed.size() - 1; i >= 0; i--) {
+            retries.addFirst(failed.get(i));
+        }
+        retrying.set(retries.size());
+        // failed events keep their place in the queue capacity and in the pending counts until written
+        queued.addAndGet(-done.size());
+        done.forEach(finished -> pendingByUser.computeIfPresent(finished.getUserId(),
+                (userId, pending) -> pending == 1 ? null : pending - 1));
+        if (!failed.isEmpty()) {
+            log.warn("Failed to write {} events, they are retried with the next flush", failed.size());
+        }
+        log.debug("Written {} events", written.size());
+        notifyListeners(written);
+        return failed.isEmpty();
+    }
+
+    private WriteResult writeSingle(Event event) {
+        try {
+            eventRepository.create(event);
+            return WriteResult.WRITTEN;
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Dropped event {}: {}", event, e.getMessage());
+            return WriteResult.DROPPED;
+        } catch (DataAccessException e) {
+            log.warn("Failed to write event {}: {}", event, e.getMessage());
+            return WriteResult.FAILED;
+        }
+    }
+
+    private void notifyListeners(List<Event> events) {
+        for (Consumer<List<Event>> listener : listeners) {
+            try {
+                listener.accept(events);
+            } catch (RuntimeException e) {
+                log.error("Event listener failed", e);
+            }
+        }
+    }
+
+    private enum WriteResult {
+        WRITTEN, FAILED, DROPPED
+    }
+
+    public record Stats(int queued, int retrying, long dropped) {
+    }
+}
@@ -0,0 +1,282 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dto.EventDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes new feed events to subscribers over Server-Sent Events. Each subscriber has its own bounded
+ * buffer drained by a small shared pool, so an idle connection costs no thread; a subscriber whose buffer
+ * overflows is disconnected and resumes from its Last-Event-ID when it reconnects. A subscriber whose
+ * write blocks longer than the send timeout is disconnected too, and the pool gets a thread in place of
+ * the blocked one until the write returns, so slow clients can't starve the others.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FeedStreamService {
+    private static final Object HEARTBEAT = new Object();
+    private static final long STUCK = -1;
+
+    private final EventService eventService;
+    private final EventWriter eventWriter;
+    private final ValidationService validationService;
+
+    @Value("${filmorate.feed.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${filmorate.feed.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${filmorate.feed.stream.delivery-threads:4}")
+    private int deliveryThreads;
+
+    @Value("${filmorate.feed.stream.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    @Value("${filmorate.feed.stream.replay-limit:1000}")
+    private int replayLimit;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private ThreadPoolExecutor delivery;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threads = new AtomicInteger();
+        delivery = new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "feed-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        eventWriter.onWritten(this::publish);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(Subscriber::close));
+        delivery.shutdown();
+    }
+
+    public SseEmitter subscribe(long userId, Long lastEventId) {
+        validationService.validateUserById(userId);
+
+        Subscriber subscriber = new Subscriber(userId, new SseEmitter(timeoutMs));
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(e -> subscriber.close());
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+
+        // live events are buffered from here on, so the replay can't miss anything written before;
+        // it runs on the pool, so the emitter is returned and events go to the socket instead of piling up
+        delivery.execute(() -> subscriber.replay(lastEventId));
+        return subscriber.emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @Scheduled(fixedRateString = "${filmorate.feed.stream.heartbeat-ms:15000}")
+    void sendHeartbeats() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(Subscriber::heartbeat));
+    }
+
+    /**
+     * Disconnects subscribers whose write has been blocked longer than the send timeout and adds a
+     * delivery thread for each, given back once the write returns.
+     */
+    @Scheduled(fixedRateString = "${filmorate.feed.stream.send-check-ms:1000}")
+    void disconnectStuckSubscribers() {
+        long deadline = System.currentTimeMillis() - sendTimeoutMs;
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> {
+            long started = subscriber.sendStarted.get();
+            if (started > 0 && started < deadline && subscriber.sendStarted.compareAndSet(started, STUCK)) {
+                log.info("Disconnecting stuck feed subscriber of user {}", subscriber.userId);
+                resizeDelivery(1);
+                subscriber.close();
+            }
+        }));
+    }
+
+    private void resizeDelivery(int delta) {
+        synchronized (delivery) {
+            int size = delivery.getCorePoolSize() + delta;
+            if (delta > 0) {
+                delivery.setMaximumPoolSize(size);
+                delivery.setCorePoolSize(size);
+            } else {
+                delivery.setCorePoolSize(size);
+                delivery.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    private void publish(List<Event> events) {
+        for (Event event : events) {
+            Set<Subscriber> userSubscribers = subscribers.get(event.getUserId());
+            if (userSubscribers != null) {
+                EventDTO dto = eventService.convertToDto(event);
+                userSubscribers.forEach(subscriber -> subscriber.offer(dto));
+            }
+        }
+    }
+
+    private final class Subscriber {
+        private final long userId;
+        private final SseEmitter emitter;
+        private final Queue<Object> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicLong lastSentEventId = new AtomicLong();
+        // when the current write started, 0 between writes, STUCK once it is timed out
+        private final AtomicLong sendStarted = new AtomicLong();
+
+        Subscriber(long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(Object item) {
+            if (closed.get()) {
+                return;
+            }
+            if (buffered.incrementAndGet() > bufferSize) {
+                // the drain scheduled for the full buffer ends the response
+                log.info("Disconnecting slow feed subscriber of user {}", userId);
+                close();
+                return;
+            }
+            buffer.offer(item);
+            scheduleDrain();
+        }
+
+        void heartbeat() {
+            if (buffered.get() == 0) {
+                offer(HEARTBEAT);
+            }
+        }
+
+        /**
+         * Sends events missed since lastEventId, up to the replay limit. If more are missed, the stream
+         * ends after the limit and the client continues from there when it reconnects.
+         */
+        void replay(Long lastEventId) {
+            try {
+                if (lastEventId != null) {
+                    lastSentEventId.set(lastEventId);
+                    int replayed = 0;
+                    List<EventDTO> missed;
+                    do {
+                        int size = Math.min(Page.MAX_SIZE, replayLimit - replayed);
+                        missed = eventService.getUserFeed(userId, lastSentEventId.get(), size);
+                        for (EventDTO event : missed) {
+                            send(event);
+                        }
+                        replayed += missed.size();
+                    } while (missed.size() == Page.MAX_SIZE && replayed < replayLimit);
+                    if (replayed == replayLimit && !eventService.getUserFeed(userId, lastSentEventId.get(), 1).isEmpty()) {
+                        close();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            completeIfClosed();
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!buffer.isEmpty() && !closed.get() && draining.compareAndSet(false, true)) {
+                delivery.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Object item;
+                while (!closed.get() && (item = buffer.poll()) != null) {
+                    buffered.decrementAndGet();
+                    if (item == HEARTBEAT) {
+                        write(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        send((EventDTO) item);
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            completeIfClosed();
+            scheduleDrain();
+        }
+
+        private void send(EventDTO event) throws IOException {
+            if (event.getEventId() <= lastSentEventId.get()) {
+                return;
+            }
+            write(SseEmitter.event().id(String.valueOf(event.getEventId())).name("event").data(event));
+            lastSentEventId.set(event.getEventId());
+        }
+
+        private void write(SseEmitter.SseEventBuilder event) throws IOException {
+            sendStarted.set(System.currentTimeMillis());
+            try {
+                emitter.send(event);
+            } finally {
+                if (sendStarted.getAndSet(0) == STUCK) {
+                    resizeDelivery(-1);
+                }
+            }
+        }
+
+        /**
+         * Ends the response of a subscriber closed by another thread. Done here, as the emitter's
+         * methods wait for a write in progress.
+         */
+        private void completeIfClosed() {
+            if (closed.get()) {
+                emitter.complete();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.computeIfPresent(userId, (id, userSubscribers) -> {
+                    userSubscribers.remove(this);
+                    return userSubscribers.isEmpty() ? null : userSubscribers;
+                });
+                subscriberCount.decrementAndGet();
+                buffer.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.RatingStats;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Writes film likes, optionally behind the request. In write-behind mode like states are coalesced
+ * per film and user, the last one winning, and written in batches once the flush interval passes or
+ * enough of them have gathered, with one rating stats update per film. Every state is appended to a
+ * local journal and synced before the caller gets an answer, so buffered likes survive a crash and
+ * are written on the next start. Until a like is written, rates are read as the stored rating stats
+ * plus the change of the buffered likes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmLikeWriter {
+    private static final int STRIPE_BITS = 6;
+
+    private final FilmRepository filmRepository;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+
+    @Value("${filmorate.likes.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${filmorate.likes.write-behind.flush-size:1000}")
+    private int flushSize;
+
+    @Value("${filmorate.likes.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${filmorate.likes.write-behind.journal-dir:db/like-journal}")
+    private Path journalDirectory;
+
+    private final Stripe[] stripes = Stream.generate(Stripe::new).limit(1 << STRIPE_BITS).toArray(Stripe[]::new);
+    private final ConcurrentHashMap<Long, FilmPending> pendingByFilm = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantReadWriteLock rollLock = new ReentrantReadWriteLock();
+    // odd while a batch is being written, so readers can tell stored stats that may already include it
+    private final AtomicLong writes = new AtomicLong();
+
+    private LikeJournal journal;
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = LikeJournal.open(journalDirectory);
+        List<FilmLike> replayed = journal.readRolled();
+        if (!replayed.isEmpty()) {
+            List<FilmLike> dropped = write(replayed);
+            for (FilmLike like : replayed) {
+                if (dropped.contains(like)) {
+                    continue;
+                }
+                if (like.liked()) {
+                    likeMatrix.addLike(like.userId(), like.filmId());
+                } else {
+                    likeMatrix.removeLike(like.userId(), like.filmId());
+                }
+            }
+            leaderboard.updateRates(filmRepository.rateByFilmIds(
+                    replayed.stream().map(FilmLike::filmId).distinct().toList()));
+            log.info("Written {} likes left in the journal", replayed.size());
+        }
+        journal.deleteRolled();
+        running = true;
+        writer = new Thread(this::run, "like-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        flush();
+        journal.close();
+        log.info("Like writer is stopped");
+    }
+
+    public boolean addLike(long filmId, long userId, Double mark) {
+        if (!running) {
+            return filmRepository.addLike(filmId, userId, mark);
+        }
+        buffer(FilmLike.of(filmId, userId, mark));
+        return true;
+    }
+
+    public boolean removeLike(long filmId, long userId) {
+        if (!running) {
+            return filmRepository.removeLike(filmId, userId);
+        }
+        return buffer(FilmLike.absent(filmId, userId)).liked();
+    }
+
+    public Double rateByFilmId(long filmId) {
+        return rateByFilmIds(List.of(filmId)).get(filmId);
+    }
+
+    /**
+     * Returns rates of the films, buffered likes included.
+     */
+    public Map<Long, Double> rateByFilmIds(Collection<Long> ids) {
+        while (true) {
+            long write = writes.get();
+            if ((write & 1) != 0) {
+                flushLock.lock();
+                flushLock.unlock();
+                continue;
+            }
+            if (ids.stream().noneMatch(pendingByFilm::containsKey)) {
+                return filmRepository.rateByFilmIds(ids);
+            }
+            Map<Long, Double> rates = new HashMap<>();
+            filmRepository.findRatingStats(ids).forEach((filmId, stats) -> {
+                FilmPending film = pendingByFilm.get(filmId);
+                rates.put(filmId, (film == null ? stats : stats.plus(film.delta())).rate());
+            });
+            if (writes.get() == write) {
+                return rates;
+            }
+        }
+    }
+
+    /**
+     * Writes every buffered like. Called before reading likes or rating stats straight from the database.
+     */
+    public void flush() {
+        if (journal == null || pending.get() == 0) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // records appended from now on go to a new file, the rolled ones are all in the snapshot below
+            rollLock.writeLock().lock();
+            try {
+                journal.roll();
+            } finally {
+                rollLock.writeLock().unlock();
+            }
+            List<PendingLike> snapshot = new ArrayList<>(pending.get());
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    snapshot.addAll(stripe.likes.values());
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            for (int from = 0; from < snapshot.size(); from += flushSize) {
+                List<PendingLike> batch = snapshot.subList(from, Math.min(from + flushSize, snapshot.size()));
+                writes.incrementAndGet();
+                try {
+                    List<FilmLike> dropped = write(batch.stream().map(PendingLike::like).toList());
+                    batch.forEach(written -> settle(written, dropped.contains(written.like())));
+                } finally {
+                    writes.incrementAndGet();
+                }
+            }
+            journal.deleteRolled();
+            log.debug("Written {} likes", snapshot.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private FilmLike buffer(FilmLike like) {
+        long key = like.filmId() << Integer.SIZE | like.userId();
+        Stripe stripe = stripes[(int) (key * 0x9E3779B97F4A7C15L >>> (Long.SIZE - STRIPE_BITS))];
+        PendingLike buffered;
+        FilmLike previous;
+        long position;
+        rollLock.readLock().lock();
+        try {
+            stripe.lock.lock();
+            try {
+                buffered = stripe.likes.get(key);
+                FilmLike stored = buffered != null
+                        ? buffered.stored()
+                        : filmRepository.findLike(like.filmId(), like.userId());
+                previous = buffered != null ? buffered.like() : stored;
+                position = journal.append(like);
+                stripe.likes.put(key, new PendingLike(key, stored, like));
+                addPending(like.filmId(), RatingStats.of(like).minus(RatingStats.of(previous)), buffered == null ? 1 : 0);
+            } finally {
+                stripe.lock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rollLock.readLock().unlock();
+        }
+        try {
+            journal.sync(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (buffered == null && pending.incrementAndGet() >= flushSize) {
+            LockSupport.unpark(writer);
+        }
+        return previous;
+    }
+
+    /**
+     * Takes a written like out of the buffer, or, if it changed in the meantime, makes the written
+     * state its stored one.
+     */
+    private void settle(PendingLike written, boolean dropped) {
+        FilmLike like = written.like();
+        Stripe stripe = stripes[(int) (written.key() * 0x9E3779B97F4A7C15L >>> (Long.SIZE - STRIPE_BITS))];
+        stripe.lock.lock();
+        try {
+            PendingLike current = stripe.likes.get(written.key());
+            if (current == written) {
+                stripe.likes.remove(written.key());
+                pending.decrementAndGet();
+                addPending(like.filmId(), RatingStats.of(written.stored()).minus(RatingStats.of(like)), -1);
+            } else if (!dropped) {
+                stripe.likes.put(written.key(), new PendingLike(written.key(), like, current.like()));
+                addPending(like.filmId(), RatingStats.of(written.stored()).minus(RatingStats.of(like)), 0);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void addPending(long filmId, RatingStats delta, int likes) {
+        pendingByFilm.compute(filmId, (id, film) -> {
+            FilmPending updated = film == null
+                    ? new FilmPending(delta, likes)
+                    : new FilmPending(film.delta().plus(delta), film.likes() + likes);
+            return updated.likes() == 0 ? null : updated;
+        });
+    }
+
+    /**
+     * Writes the likes and returns those dropped because their film or user no longer exists.
+     */
+    private List<FilmLike> write(List<FilmLike> likes) {
+        try {
+            filmRepository.applyLikes(likes);
+            return List.of();
+        } catch (DataIntegrityViolationException e) {
+            // a film or user deleted while their likes were buffered fails the whole batch, so the rest go one by one
+            List<FilmLike> dropped = new ArrayList<>();
+            for (FilmLike like : likes) {
+                try {
+                    filmRepository.applyLikes(List.of(like));
+                } catch (DataIntegrityViolationException single) {
+                    log.warn("Dropped like {}: {}", like, single.getMessage());
+                    dropped.add(like);
+                }
+            }
+            return dropped;
+        }
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running) {
+            if (pending.get() < flushSize) {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Failed to write likes", e);
+            }
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, PendingLike> likes = new HashMap<>();
+    }
+
+    private record PendingLike(long key, FilmLike stored, FilmLike like) {
+    }
+
+    private record FilmPending(RatingStats delta, int likes) {
+    }
+}
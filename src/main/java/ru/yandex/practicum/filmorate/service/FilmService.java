@@ -1,33 +1,85 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.Validator;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.index.EntityIdIndex;
+import ru.yandex.practicum.filmorate.index.FilmDtoCache;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.index.TinyLfuCache;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.repository.FilmRepository;
-import ru.yandex.practicum.filmorate.repository.MpaRepository;
+import ru.yandex.practicum.filmorate.repository.ReviewRepository;
 import ru.yandex.practicum.filmorate.utils.FilmMapper;
+import ru.yandex.practicum.filmorate.utils.JsonStreamReader;
 import ru.yandex.practicum.filmorate.utils.OperationType;
+import ru.yandex.practicum.filmorate.utils.PageCursor;
 import ru.yandex.practicum.filmorate.utils.SearchBy;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 @Service
 @RequiredArgsConstructor
 public class FilmService {
 
+    private static final int DTO_BATCH_SIZE = 1000;
+
     private final FilmRepository filmRepository;
-    private final MpaRepository mpaRepository;
+    private final ReviewRepository reviewRepository;
     private final EventService eventService;
     private final ValidationService validationService;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final FilmSearchIndex searchIndex;
+    private final LikeMatrix likeMatrix;
+    private final RecommendationJobService recommendationJobService;
+    private final EntityIdIndex entityIds;
+    private final ReferenceDataCache referenceData;
+    private final FilmDtoCache filmCache;
+    private final FilmLikeWriter likeWriter;
+    private final Validator validator;
+
+    @Value("${filmorate.batch.chunk-size:1000}")
+    private int batchChunkSize;
 
     public List<FilmDTO> getAllFilms() {
-        return filmRepository.findAll().stream()
-                .map(this::toDTO)
-                .toList();
+        return toDTOs(filmRepository.findAll());
+    }
+
+    /**
+     * Passes every film to the consumer, reading them by pages of ids, so no connection is held while
+     * the consumer writes a page to a slow client.
+     */
+    public void streamAllFilms(Consumer<FilmDTO> consumer) {
+        long afterId = 0;
+        List<Film> page;
+        do {
+            page = filmRepository.findPage(afterId, DTO_BATCH_SIZE);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+            toDTOs(page).forEach(consumer);
+        } while (page.size() == DTO_BATCH_SIZE);
+    }
+
+    public Page<FilmDTO> getFilmsPage(String after, Integer limit) {
+        int size = Page.size(limit);
+        long afterId = after == null ? 0 : PageCursor.parse(after).id();
+        List<FilmDTO> films = toDTOs(filmRepository.findPage(afterId, size));
+        return Page.of(films, size, film -> PageCursor.of(film.getId()));
     }
 
     public FilmDTO updateFilm(FilmDTO filmDto) {
@@ -37,20 +89,33 @@ public class FilmService {
         filmRepository.update(FilmMapper.mapToFilm(filmDto));
 
         filmRepository.updateGenres(filmDto.getGenres(), filmDto.getId());
-        filmDto.setDirectors(filmRepository.updateDirectors(filmDto.getDirectors(), filmDto.getId()));
+        filmRepository.updateDirectors(filmDto.getDirectors(), filmDto.getId());
+        filmCache.invalidate(filmDto.getId());
 
-        return getFilmById(filmDto.getId());
+        FilmDTO updated = getFilmById(filmDto.getId());
+        leaderboard.updateFilm(updated.getId(), updated.getReleaseDate().getYear(), genreIds(updated));
+        searchIndex.putFilm(updated.getId(), updated.getName(), directorIds(updated));
+        return updated;
     }
 
     public FilmDTO addFilm(FilmDTO film) {
         validationService.validateFilmDto(film);
 
         Film save = filmRepository.save(FilmMapper.mapToFilm(film));
+        entityIds.films().add(save.getId());
 
         filmRepository.updateGenres(film.getGenres(), save.getId());
-        film.setDirectors(filmRepository.updateDirectors(film.getDirectors(), save.getId()));
+        filmRepository.updateDirectors(film.getDirectors(), save.getId());
         film.setId(save.getId());
-        return getFilmById(save.getId());
+        FilmDTO saved = getFilmById(save.getId());
+        leaderboard.addFilm(saved.getId(), saved.getReleaseDate().getYear(), genreIds(saved));
+        searchIndex.putFilm(saved.getId(), saved.getName(), directorIds(saved));
+        return saved;
+    }
+
+    public BatchResult addFilms(Iterator<JsonStreamReader.Item<FilmDTO>> films) {
+        return new BatchImport<>(validator, this::validateNewFilm, this::saveFilms, "Film conflicts with stored data")
+                .run(films, batchChunkSize);
     }
 
     public boolean addFilmLike(long id, long userId, Double mark) {
@@ -58,66 +123,66 @@ public class FilmService {
         validationService.validateUserById(userId);
         if (mark != null) validationService.validateMark(mark);
         eventService.createLikeEvent(userId, id, OperationType.ADD);
-        return filmRepository.addLike(id, userId, mark);
+        boolean added = likeWriter.addLike(id, userId, mark);
+        filmCache.invalidate(id);
+        likeMatrix.addLike(userId, id);
+        leaderboard.refreshRate(id, likeWriter::rateByFilmId);
+        return added;
     }
 
     public boolean deleteFilmLike(long id, long userId) {
         validationService.validateFilmById(id);
         validationService.validateUserById(userId);
         eventService.createLikeEvent(userId, id, OperationType.REMOVE);
-        return filmRepository.removeLike(id, userId);
+        boolean removed = likeWriter.removeLike(id, userId);
+        filmCache.invalidate(id);
+        likeMatrix.removeLike(userId, id);
+        leaderboard.refreshRate(id, likeWriter::rateByFilmId);
+        return removed;
     }
 
     public List<FilmDTO> getPopularFilms(Integer genreId, Integer year, @Positive int count) {
-        List<Film> films;
-        if (genreId != null && year != null) {
-            films = filmRepository.getPopularFilmsByGenreAndYear(genreId, year, count);
-        } else if (genreId != null) {
-            films = filmRepository.getPopularFilmsByGenre(genreId, count);
-        } else if (year != null) {
-            films = filmRepository.getPopularFilmsByYear(year, count);
-        } else {
-            films = filmRepository.findAll();
+        Optional<List<Long>> topIds = leaderboard.getTop(genreId, year, count);
+        if (topIds.isEmpty()) {
+            likeWriter.flush();
+            return toDTOs(filmRepository.getPopularFilms(genreId, year, count));
         }
-
-        return films.stream()
-                .map(this::toDTO)
-                .sorted(Comparator.comparing(FilmDTO::getRate, Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(count)
-                .toList();
+        return toDTOsInOrder(topIds.get());
     }
 
     public FilmDTO getFilmById(@Positive long id) {
+        return filmCache.get(id, this::loadFilmById);
+    }
+
+    public TinyLfuCache.Stats getFilmCacheStats() {
+        return filmCache.getStats();
+    }
+
+    private FilmDTO loadFilmById(long id) {
         Optional<Film> optFilm = filmRepository.findById(id);
         if (optFilm.isEmpty()) {
             throw new NotFoundException("There is no film with id=" + id);
         }
-        return toDTO(optFilm.get());
+        return toDTOs(List.of(optFilm.get())).get(0);
     }
 
     public List<FilmDTO> getCommonFilms(long userId, long friendId) {
         validationService.validateUserById(userId, friendId);
-        List<Film> userFilms = filmRepository.findFilmByUserIdLike(userId);
-        List<Long> friendFilmsIds = filmRepository.findFilmByUserIdLike(friendId).stream().map(Film::getId).toList();
-        return userFilms.stream()
-                .filter(film -> friendFilmsIds.contains(film.getId()))
-                .map(this::toDTO)
-                .toList();
+        likeWriter.flush();
+        return toDTOs(filmRepository.findCommonFilms(userId, friendId));
     }
 
     public List<FilmDTO> searchFilms(String query, String... searchOptions) {
-        Set<Film> filmSet = new HashSet<>();
+        Set<Long> filmIds = new HashSet<>();
         for (String by : searchOptions) {
             try {
                 SearchBy searchBy = SearchBy.valueOf(by.toUpperCase());
-                filmSet.addAll(filmRepository.search(query, searchBy));
+                filmIds.addAll(searchIndex.search(query, searchBy));
             } catch (IllegalArgumentException e) {
                 throw new ValidationException("Search options must be in " + Arrays.toString(SearchBy.values()));
             }
         }
-        return filmSet.stream().map(this::toDTO)
-                .sorted(Comparator.comparing(FilmDTO::getRate, Comparator.nullsLast(Comparator.reverseOrder())))
-                .toList();
+        return toDTOsInOrder(leaderboard.rank(filmIds));
     }
 
     public List<FilmDTO> getSortedByDirectorFilms(int directorId, String sortBy) {
@@ -131,30 +196,109 @@ public class FilmService {
         } else {
             throw new ValidationException("Sort by must be rate or year");
         }
-        return filmsByDirectorId.stream()
-                .map(this::toDTO)
+        return toDTOs(filmsByDirectorId).stream()
                 .sorted(comparator)
                 .toList();
     }
 
     public List<FilmDTO> getRecommendations(long userId) {
         validationService.validateUserById(userId);
-        List<Film> recommendations = filmRepository.getRecommendations(userId);
-        return recommendations.stream()
-                .map(this::toDTO)
-                .toList();
+        List<Long> filmIds = recommendationJobService.findFreshRecommendations(userId)
+                .orElseGet(() -> likeMatrix.recommend(userId));
+        return toDTOsInOrder(filmIds);
     }
 
     public boolean deleteFilmById(long filmId) {
-        return filmRepository.deleteById(filmId);
+        likeWriter.flush();
+        List<Long> reviewIds = reviewRepository.findIdsByFilmId(filmId);
+        boolean deleted = filmRepository.deleteById(filmId);
+        filmCache.invalidate(filmId);
+        entityIds.films().remove(filmId);
+        reviewIds.forEach(entityIds.reviews()::remove);
+        leaderboard.removeFilm(filmId);
+        searchIndex.removeFilm(filmId);
+        likeMatrix.removeFilm(filmId);
+        return deleted;
     }
 
-    private FilmDTO toDTO(Film film) {
-        return FilmMapper.mapToDto(
-                film,
-                filmRepository.findGenresByFilmId(film.getId()),
-                mpaRepository.findById(film.getMpa()).orElse(null),
-                filmRepository.rateByFilmId(film.getId()),
-                filmRepository.findDirectorsByFilmId(film.getId()));
+    public int rebuildRatingStats() {
+        likeWriter.flush();
+        int rebuilt = filmRepository.rebuildRatingStats();
+        leaderboard.rebuild();
+        filmCache.invalidateAll();
+        return rebuilt;
+    }
+
+    private void validateNewFilm(FilmDTO film) {
+        validationService.validateFilmDto(film);
+        validationService.validateDirectorById(directorIds(film).stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private List<Long> saveFilms(List<FilmDTO> films) {
+        List<List<Integer>> genreIds = films.stream().map(FilmService::genreIds).toList();
+        List<List<Integer>> directorIds = films.stream().map(FilmService::directorIds).toList();
+        List<Film> saved = filmRepository.saveAll(films.stream().map(FilmMapper::mapToFilm).toList(), genreIds, directorIds);
+        List<Long> ids = new ArrayList<>(saved.size());
+        for (int i = 0; i < saved.size(); i++) {
+            Film film = saved.get(i);
+            entityIds.films().add(film.getId());
+            leaderboard.addFilm(film.getId(), film.getReleaseDate().getYear(), genreIds.get(i));
+            searchIndex.putFilm(film.getId(), film.getName(), directorIds.get(i));
+            ids.add(film.getId());
+        }
+        return ids;
+    }
+
+    private static List<Integer> genreIds(FilmDTO film) {
+        return film.getGenres() == null
+                ? List.of()
+                : film.getGenres().stream().map(Genre::getId).distinct().toList();
+    }
+
+    private static List<Integer> directorIds(FilmDTO film) {
+        return film.getDirectors() == null
+                ? List.of()
+                : film.getDirectors().stream().map(Director::getId).distinct().toList();
+    }
+
+    private List<FilmDTO> toDTOsInOrder(List<Long> ids) {
+        Map<Long, Film> filmsById = new HashMap<>();
+        filmRepository.findAllByIds(ids).forEach(film -> filmsById.put(film.getId(), film));
+        return toDTOs(ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    private static <T> List<T> resolve(List<Integer> ids, IntFunction<Optional<T>> lookup) {
+        List<T> resolved = new ArrayList<>();
+        if (ids != null) {
+            ids.forEach(id -> lookup.apply(id).ifPresent(resolved::add));
+        }
+        return resolved;
+    }
+
+    private List<FilmDTO> toDTOs(List<Film> films) {
+        List<FilmDTO> dtos = new ArrayList<>(films.size());
+        if (films.isEmpty()) {
+            return dtos;
+        }
+        for (int from = 0; from < films.size(); from += DTO_BATCH_SIZE) {
+            List<Film> batch = films.subList(from, Math.min(from + DTO_BATCH_SIZE, films.size()));
+            List<Long> ids = batch.stream().map(Film::getId).toList();
+            Map<Long, List<Integer>> genreIds = filmRepository.findGenreIdsByFilmIds(ids);
+            Map<Long, List<Integer>> directorIds = filmRepository.findDirectorIdsByFilmIds(ids);
+            Map<Long, Double> rates = likeWriter.rateByFilmIds(ids);
+
+            for (Film film : batch) {
+                dtos.add(FilmMapper.mapToDto(
+                        film,
+                        resolve(genreIds.get(film.getId()), referenceData::getGenre),
+                        film.getMpa() == null ? null : referenceData.getMpa(film.getMpa()).orElse(null),
+                        rates.get(film.getId()),
+                        resolve(directorIds.get(film.getId()), referenceData::getDirector)));
+            }
+        }
+        return dtos;
     }
 }
@@ -4,29 +4,24 @@ import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.repository.GenreRepository;
 
 import java.util.List;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class GenreService {
 
-    private final GenreRepository repository;
+    private final ReferenceDataCache referenceData;
 
     public List<Genre> getAllGenres() {
-        return repository.findAll();
+        return referenceData.getAllGenres();
     }
 
     public Genre getGenreById(@Positive int id) {
-        Optional<Genre> genreById = repository.findById(id);
-        if (genreById.isEmpty()) {
-            throw new NotFoundException("There is no genre with id=" + id);
-        } else {
-            return genreById.get();
-        }
+        return referenceData.getGenre(id)
+                .orElseThrow(() -> new NotFoundException("There is no genre with id=" + id));
     }
 
 }
@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of buffered like states. Records go to the current file and are synced in groups:
+ * a writer waits until a sync covers its record, and one sync covers every record written before it.
+ * Rolling syncs and closes the current file and starts a new one; rolled files are deleted once
+ * their likes are in the database.
+ */
+final class LikeJournal {
+    private static final String SUFFIX = ".journal";
+    private static final int RECORD_SIZE = 2 * Long.BYTES + 1 + Double.BYTES + Integer.BYTES;
+    private static final byte LIKED = 1;
+    private static final byte MARKED = 2;
+
+    private final Path directory;
+    private final List<Path> rolled = new ArrayList<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 checksum = new CRC32();
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private Path current;
+    private FileChannel channel;
+    private long sequence;
+    private long fileStart;
+    private long written;
+    private volatile long synced;
+
+    private LikeJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the journal in the directory. Files left by the previous run are taken as rolled ones.
+     */
+    static LikeJournal open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        LikeJournal journal = new LikeJournal(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.toString().endsWith(SUFFIX)).sorted().forEach(journal.rolled::add);
+        }
+        if (!journal.rolled.isEmpty()) {
+            String last = journal.rolled.get(journal.rolled.size() - 1).getFileName().toString();
+            journal.sequence = Long.parseLong(last.substring("likes-".length(), last.length() - SUFFIX.length()));
+        }
+        journal.startFile();
+        return journal;
+    }
+
+    /**
+     * Reads like states from the rolled files, a later record of the same film and user replacing an
+     * earlier one. A record torn by a crash ends its file.
+     */
+    synchronized List<FilmLike> readRolled() throws IOException {
+        Map<List<Long>, FilmLike> likes = new LinkedHashMap<>();
+        for (Path file : rolled) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (data.remaining() >= RECORD_SIZE) {
+                int start = data.position();
+                long filmId = data.getLong();
+                long userId = data.getLong();
+                byte flags = data.get();
+                double mark = data.getDouble();
+                checksum.reset();
+                checksum.update(data.array(), start, RECORD_SIZE - Integer.BYTES);
+                if (data.getInt() != (int) checksum.getValue()) {
+                    break;
+                }
+                likes.put(List.of(filmId, userId),
+                        new FilmLike(filmId, userId, (flags & LIKED) != 0, (flags & MARKED) != 0 ? mark : null));
+            }
+        }
+        return List.copyOf(likes.values());
+    }
+
+    /**
+     * Writes the like state and returns the position to pass to {@link #sync(long)}.
+     */
+    synchronized long append(FilmLike like) throws IOException {
+        record.clear();
+        record.putLong(like.filmId());
+        record.putLong(like.userId());
+        record.put((byte) ((like.liked() ? LIKED : 0) | (like.mark() != null ? MARKED : 0)));
+        record.putDouble(like.mark() == null ? 0 : like.mark());
+        checksum.reset();
+        checksum.update(record.array(), 0, record.position());
+        record.putInt((int) checksum.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        written += RECORD_SIZE;
+        return written;
+    }
+
+    /**
+     * Returns once every record up to the position is on disk.
+     */
+    void sync(long position) throws IOException {
+        if (synced >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (synced >= position) {
+                return;
+            }
+            FileChannel target;
+            long end;
+            synchronized (this) {
+                target = channel;
+                end = written;
+            }
+            target.force(false);
+            synced = end;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    void roll() throws IOException {
+        syncLock.lock();
+        try {
+            synchronized (this) {
+                if (written == fileStart) {
+                    return;
+                }
+                channel.force(false);
+                channel.close();
+                synced = written;
+                rolled.add(current);
+                startFile();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    synchronized void deleteRolled() throws IOException {
+        for (Path file : rolled) {
+            Files.deleteIfExists(file);
+        }
+        rolled.clear();
+    }
+
+    synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+        if (written == fileStart) {
+            Files.delete(current);
+        }
+    }
+
+    private void startFile() throws IOException {
+        current = directory.resolve(String.format("likes-%019d%s", ++sequence, SUFFIX));
+        channel = FileChannel.open(current, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        fileStart = written;
+    }
+}
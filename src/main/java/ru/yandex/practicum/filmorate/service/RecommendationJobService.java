@@ -0,0 +1,197 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.RecommendationJobDTO;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.RecommendationJob;
+import ru.yandex.practicum.filmorate.repository.RecommendationRepository;
+import ru.yandex.practicum.filmorate.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Precomputes recommendations of every user into USER_RECOMMENDATIONS. Users are walked in id order in
+ * waves of chunks processed in parallel, and the last user id of a finished wave is saved, so a job
+ * interrupted by a crash continues from that wave on the next start.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecommendationJobService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final RecommendationRepository recommendationRepository;
+    private final LikeMatrix likeMatrix;
+    private final EventWriter eventWriter;
+
+    @Value("${filmorate.recommendations.job.parallelism:0}")
+    private int parallelism;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong processedInRun = new AtomicLong();
+    private ExecutorService jobRunner;
+
+    @PostConstruct
+    void init() {
+        jobRunner = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "recommendation-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobRunner.shutdown();
+    }
+
+    public Optional<List<Long>> findFreshRecommendations(long userId) {
+        // freshness is judged by the user's like events, so the ones still queued have to be written first
+        eventWriter.flushFor(userId);
+        return recommendationRepository.findFreshRecommendations(userId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJob() {
+        recommendationRepository.findLastJob()
+                .filter(job -> job.getFinishedAt() == null)
+                .ifPresent(job -> {
+                    log.info("Resuming recommendation job id={} after user id={}", job.getId(), job.getLastUserId());
+                    runAsync();
+                });
+    }
+
+    /**
+     * Starts a job in the background. Returns false if a job is already running.
+     */
+    public boolean runAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            jobRunner.execute(() -> {
+                try {
+                    runClaimed();
+                } catch (RuntimeException e) {
+                    log.error("Recommendation job failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    @Scheduled(cron = "${filmorate.recommendations.job.cron:0 0 3 * * *}")
+    public void runScheduled() {
+        // the job takes long, the scheduler thread is left to the short periodic tasks
+        runAsync();
+    }
+
+    /**
+     * Runs a new job or continues the unfinished one. Returns false if a job is already running.
+     */
+    public boolean run() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runClaimed();
+        return true;
+    }
+
+    /**
+     * Runs the job on behalf of the caller that set the running flag, and clears the flag when done.
+     */
+    private void runClaimed() {
+        try {
+            RecommendationJob job = recommendationRepository.findLastJob()
+                    .filter(last -> last.getFinishedAt() == null)
+                    .orElseGet(() -> recommendationRepository.startJob(LocalDateTime.now()));
+            processedInRun.set(0);
+            long started = System.nanoTime();
+
+            ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : new ForkJoinPool();
+            try {
+                int waveSize = CHUNK_SIZE * pool.getParallelism();
+                List<Long> userIds = userRepository.findIdsAfter(job.getLastUserId(), waveSize);
+                while (!userIds.isEmpty()) {
+                    List<List<Long>> chunks = new ArrayList<>();
+                    for (int from = 0; from < userIds.size(); from += CHUNK_SIZE) {
+                        chunks.add(userIds.subList(from, Math.min(from + CHUNK_SIZE, userIds.size())));
+                    }
+                    pool.submit(() -> chunks.parallelStream().forEach(this::processChunk)).get();
+
+                    job.setLastUserId(userIds.get(userIds.size() - 1))
+                            .setProcessedUsers(job.getProcessedUsers() + userIds.size());
+                    recommendationRepository.saveProgress(job);
+                    userIds = userRepository.findIdsAfter(job.getLastUserId(), waveSize);
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            recommendationRepository.saveProgress(job.setFinishedAt(LocalDateTime.now()));
+            Duration took = Duration.ofNanos(System.nanoTime() - started);
+            log.info("Recommendation job id={} computed {} users in {} ms",
+                    job.getId(), processedInRun.get(), took.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recommendation job is interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Recommendation job failed", e.getCause());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public RecommendationJobDTO getStatus() {
+        RecommendationJobDTO status = new RecommendationJobDTO()
+                .setRunning(running.get())
+                .setTotalUsers(userRepository.count());
+        recommendationRepository.findLastJob().ifPresent(job -> {
+            LocalDateTime until = job.getFinishedAt() == null ? LocalDateTime.now() : job.getFinishedAt();
+            double seconds = Math.max(Duration.between(job.getStartedAt(), until).toMillis(), 1) / 1000.0;
+            status.setJobId(job.getId())
+                    .setStartedAt(job.getStartedAt())
+                    .setFinishedAt(job.getFinishedAt())
+                    .setLastUserId(job.getLastUserId())
+                    .setProcessedUsers(job.getProcessedUsers())
+                    .setUsersPerSecond(job.getProcessedUsers() / seconds);
+        });
+        return status;
+    }
+
+    private void processChunk(List<Long> userIds) {
+        LocalDateTime computedAt = LocalDateTime.now();
+        Map<Long, List<Long>> recommendations = new HashMap<>();
+        for (long userId : userIds) {
+            recommendations.put(userId, likeMatrix.recommend(userId));
+        }
+        recommendationRepository.saveRecommendations(recommendations, computedAt);
+        processedInRun.addAndGet(userIds.size());
+    }
+}
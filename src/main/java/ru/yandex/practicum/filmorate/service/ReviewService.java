@@ -6,13 +6,16 @@ import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.dto.ReviewDTO;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.EntityIdIndex;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.repository.ReviewRepository;
 import ru.yandex.practicum.filmorate.utils.OperationType;
+import ru.yandex.practicum.filmorate.utils.PageCursor;
+import ru.yandex.practicum.filmorate.utils.ReviewMapper;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,13 +29,14 @@ public class ReviewService {
 
     private final EventService eventService;
     private final ValidationService validationService;
+    private final EntityIdIndex entityIds;
 
     public ReviewDTO getReviewsById(@NotNull Long id) {
         Optional<Review> optionalReview = reviewRepository.findById(id);
         if (optionalReview.isEmpty()) {
             throw new NotFoundException("There is no review with id=" + id);
         } else {
-            return mapToDto(optionalReview.get(), reviewRepository.calculateUsefulByReviewId(id));
+            return mapToDto(optionalReview.get());
         }
     }
 
@@ -40,8 +44,9 @@ public class ReviewService {
         validationService.validateUserById(review.getUserId());
         validationService.validateFilmById(review.getFilmId());
         Review save = reviewRepository.save(mapToReview(review));
+        entityIds.reviews().add(save.getId());
         eventService.createReviewEvent(save.getUserId(), save.getId(), OperationType.ADD);
-        return mapToDto(save, 0);
+        return mapToDto(save);
     }
 
     public ReviewDTO updateReview(@Valid ReviewDTO review) {
@@ -49,28 +54,40 @@ public class ReviewService {
         validationService.validateFilmById(review.getFilmId());
         Review update = reviewRepository.update(mapToReview(review));
         eventService.createReviewEvent(update.getUserId(), update.getId(), OperationType.UPDATE);
-        return mapToDto(update, reviewRepository.calculateUsefulByReviewId(update.getId()));
+        return mapToDto(update);
     }
 
     public boolean deleteReview(@Positive long id) {
         ReviewDTO reviewDTO = getReviewsById(id);
         eventService.createReviewEvent(reviewDTO.getUserId(), id, OperationType.REMOVE);
-        return reviewRepository.deleteById(id);
+        boolean deleted = reviewRepository.deleteById(id);
+        entityIds.reviews().remove(id);
+        return deleted;
     }
 
     public List<ReviewDTO> getAllReviews() {
         return reviewRepository.findAll().stream()
-                .map(review -> mapToDto(review, reviewRepository.calculateUsefulByReviewId(review.getId())))
-                .sorted(Comparator.comparingInt(ReviewDTO::getUseful).reversed())
+                .map(ReviewMapper::mapToDto)
                 .toList();
     }
 
 
+    public Page<ReviewDTO> getReviewsPage(Long filmId, String after, Integer limit) {
+        if (filmId != null) {
+            validationService.validateFilmById(filmId);
+        }
+        int size = Page.size(limit);
+        List<Review> reviews = reviewRepository.findPage(filmId, after == null ? null : PageCursor.parse(after), size);
+        List<ReviewDTO> dtos = reviews.stream()
+                .map(ReviewMapper::mapToDto)
+                .toList();
+        return Page.of(dtos, size, review -> PageCursor.of(review.getUseful(), review.getReviewId()));
+    }
+
     public List<ReviewDTO> getReviewsByFilmId(@Positive Long filmId, @Positive Integer count) {
         validationService.validateFilmById(filmId);
         return reviewRepository.getReviewsByFilmId(filmId, count).stream()
-                .map(review -> mapToDto(review, reviewRepository.calculateUsefulByReviewId(review.getId())))
-                .sorted(Comparator.comparingInt(ReviewDTO::getUseful).reversed())
+                .map(ReviewMapper::mapToDto)
                 .toList();
     }
 
@@ -98,4 +115,8 @@ public class ReviewService {
         return reviewRepository.deleteDislikeRow(id, userId);
     }
 
+    public int rebuildUseful() {
+        return reviewRepository.rebuildUseful();
+    }
+
 }
@@ -1,16 +1,34 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.Validator;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.index.EntityIdIndex;
+import ru.yandex.practicum.filmorate.index.FilmDtoCache;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.index.TimelineStore;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+import ru.yandex.practicum.filmorate.repository.ReviewRepository;
 import ru.yandex.practicum.filmorate.repository.UserRepository;
+import ru.yandex.practicum.filmorate.utils.JsonStreamReader;
 import ru.yandex.practicum.filmorate.utils.OperationType;
+import ru.yandex.practicum.filmorate.utils.PageCursor;
 
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 @Validated
@@ -18,13 +36,32 @@ import java.util.List;
 public class UserService {
 
     private final UserRepository repository;
+    private final FilmRepository filmRepository;
+    private final ReviewRepository reviewRepository;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FriendGraph friendGraph;
+    private final EntityIdIndex entityIds;
+    private final FilmDtoCache filmCache;
+    private final TimelineStore timelineStore;
     private final EventService eventService;
     private final ValidationService validationService;
+    private final FilmLikeWriter likeWriter;
+    private final Validator validator;
+
+    @Value("${filmorate.batch.chunk-size:1000}")
+    private int batchChunkSize;
 
     public List<User> getAllUsers() {
         return repository.findAll();
     }
 
+    public Page<User> getUsersPage(String after, Integer limit) {
+        int size = Page.size(limit);
+        long afterId = after == null ? 0 : PageCursor.parse(after).id();
+        return Page.of(repository.findPage(afterId, size), size, user -> PageCursor.of(user.getId()));
+    }
+
     public User updateUser(User user) {
         validationService.validateUserById(user.getId());
         validateName(user);
@@ -33,7 +70,15 @@ public class UserService {
 
     public User addUser(User user) {
         validateName(user);
-        return repository.save(user);
+        User saved = repository.save(user);
+        entityIds.users().add(saved.getId());
+        return saved;
+    }
+
+    public BatchResult addUsers(Iterator<JsonStreamReader.Item<User>> users) {
+        return new BatchImport<>(validator, this::validateName, this::saveUsers,
+                "User with this email or login already exists")
+                .run(users, batchChunkSize);
     }
 
     public boolean addFriend(long id, long friendId) {
@@ -42,7 +87,12 @@ public class UserService {
         }
         validationService.validateUserById(id, friendId);
         eventService.createFriendEvent(id, friendId, OperationType.ADD);
-        return repository.addFriendshipRow(id, friendId);
+        boolean added = repository.addFriendshipRow(id, friendId);
+        if (added) {
+            friendGraph.addFriend(id, friendId);
+            timelineStore.addFriend(id, friendId);
+        }
+        return added;
     }
 
     public boolean deleteFriend(@Positive long id, @Positive long friendId) {
@@ -51,12 +101,14 @@ public class UserService {
         }
         validationService.validateUserById(id, friendId);
         eventService.createFriendEvent(id, friendId, OperationType.REMOVE);
-        return repository.deleteFriendshipRow(id, friendId);
+        boolean deleted = repository.deleteFriendshipRow(id, friendId);
+        friendGraph.removeFriend(id, friendId);
+        return deleted;
     }
 
     public List<User> getFriendsByUserId(@Positive long id) {
         validationService.validateUserById(id);
-        return repository.getFriendsByUserId(id);
+        return repository.findAllByIds(friendGraph.getFriendIds(id));
     }
 
     public List<User> getCommonFriends(@Positive long id, @Positive long otherId) {
@@ -64,9 +116,32 @@ public class UserService {
             throw new ValidationException("Put different user ids");
         }
         validationService.validateUserById(id, otherId);
-        List<User> friendsByUserId1 = getFriendsByUserId(id);
-        List<User> friendsByUserId2 = getFriendsByUserId(otherId);
-        return friendsByUserId1.stream().filter(friendsByUserId2::contains).toList();
+        return repository.findAllByIds(friendGraph.getCommonFriendIds(id, otherId));
+    }
+
+    public List<User> getFriendSuggestions(@Positive long id, @Positive int count) {
+        validationService.validateUserById(id);
+        return findAllInOrder(friendGraph.getSuggestions(id, count));
+    }
+
+    public List<User> getPath(@Positive long id, @Positive long otherId, @Positive int maxDepth) {
+        validationService.validateUserById(id, otherId);
+        return findAllInOrder(friendGraph.findPath(id, otherId, maxDepth));
+    }
+
+    private List<User> findAllInOrder(List<Long> ids) {
+        Map<Long, User> usersById = new HashMap<>();
+        repository.findAllByIds(ids).forEach(user -> usersById.put(user.getId(), user));
+        return ids.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private List<Long> saveUsers(List<User> users) {
+        List<Long> ids = repository.saveAll(users).stream().map(User::getId).toList();
+        ids.forEach(entityIds.users()::add);
+        return ids;
     }
 
     private void validateName(User user) {
@@ -76,7 +151,19 @@ public class UserService {
     }
 
     public boolean deleteUserById(long userId) {
-        return repository.deleteById(userId);
+        likeWriter.flush();
+        List<Long> likedFilmIds = filmRepository.findFilmIdsByUserIdLike(userId);
+        List<Long> reviewIds = reviewRepository.findIdsByUserId(userId);
+        boolean deleted = repository.deleteById(userId);
+        entityIds.users().remove(userId);
+        entityIds.deletedUsers().add(userId);
+        reviewIds.forEach(entityIds.reviews()::remove);
+        leaderboard.updateRates(filmRepository.rateByFilmIds(likedFilmIds));
+        filmCache.invalidateAll(likedFilmIds);
+        likeMatrix.removeUser(userId);
+        friendGraph.removeUser(userId);
+        timelineStore.removeUser(userId);
+        return deleted;
     }
 
     public User getUserById(long userId) {
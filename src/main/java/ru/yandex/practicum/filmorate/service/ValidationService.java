@@ -6,18 +6,15 @@ import ru.yandex.practicum.filmorate.dto.FilmDTO;
 import ru.yandex.practicum.filmorate.exceptions.DeletedUserException;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.index.EntityIdIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.repository.*;
 
 @Service
 @RequiredArgsConstructor
 public class ValidationService {
-    private final UserRepository userRepository;
-    private final FilmRepository filmRepository;
-    private final ReviewRepository reviewRepository;
-    private final MpaRepository mpaRepository;
-    private final GenreRepository genreRepository;
-    private final DirectorRepository directorRepository;
+    private final EntityIdIndex entityIds;
+    private final ReferenceDataCache referenceData;
 
     public void validateMark(double mark) {
         if (mark < 1 || mark > 10) throw new ValidationException("Mark must be between 1 and 10 inclusive");
@@ -32,9 +29,8 @@ public class ValidationService {
 
     public void validateUserById(long... ids) {
         for (long id : ids) {
-            if (!userRepository.existById(id)) {
-                if (userRepository.existDeletedUserById(id)) {
-                    System.out.println();
+            if (!entityIds.users().contains(id)) {
+                if (entityIds.deletedUsers().contains(id)) {
                     throw new DeletedUserException("User with id" + id + "is deleted");
                 }
                 throw new NotFoundException("There is no user with id=" + id);
@@ -43,34 +39,32 @@ public class ValidationService {
     }
 
     public void validateFilmById(long... ids) {
-        for (long id : ids) {
-            if (!filmRepository.existById(id)) throw new NotFoundException("There is no film with id=" + id);
-        }
+        entityIds.films().findMissing(ids).ifPresent(id -> {
+            throw new NotFoundException("There is no film with id=" + id);
+        });
     }
 
     public void validateReviewById(long... ids) {
-        for (long id : ids) {
-            if (!reviewRepository.existById(id)) throw new NotFoundException("There is no review with id=" + id);
-        }
+        entityIds.reviews().findMissing(ids).ifPresent(id -> {
+            throw new NotFoundException("There is no review with id=" + id);
+        });
     }
 
     public void validateMpaById(int... ids) {
         for (int id : ids) {
-            if (!mpaRepository.existById(id)) throw new NotFoundException("There is no mpa with id=" + id);
+            if (referenceData.getMpa(id).isEmpty()) throw new NotFoundException("There is no mpa with id=" + id);
         }
     }
 
     public void validateGenreById(int... ids) {
         for (int id : ids) {
-            if (!genreRepository.existById(id)) {
-                throw new NotFoundException("There is no genre with id=" + id);
-            }
+            if (referenceData.getGenre(id).isEmpty()) throw new NotFoundException("There is no genre with id=" + id);
         }
     }
 
     public void validateDirectorById(int... ids) {
         for (int id : ids) {
-            if (!directorRepository.isDirectorExists(id)) {
+            if (referenceData.getDirector(id).isEmpty()) {
                 throw new NotFoundException("There is no director with id=" + id);
             }
         }
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads items one by one from a JSON array or from newline-delimited JSON, so the whole request is
+ * never held in memory. An item that can't be bound to the type comes with an error instead of a
+ * value, and malformed JSON ends the input with an error item.
+ */
+@Component
+@RequiredArgsConstructor
+public class JsonStreamReader {
+
+    private final ObjectMapper objectMapper;
+
+    public <T> Iterator<Item<T>> read(InputStream in, Class<T> type) throws IOException {
+        MappingIterator<T> values = objectMapper.readerFor(type).readValues(in);
+        return new Iterator<>() {
+            private int index;
+            private boolean ended;
+
+            @Override
+            public boolean hasNext() {
+                if (ended) {
+                    return false;
+                }
+                try {
+                    return values.hasNextValue();
+                } catch (IOException e) {
+                    // reported by next()
+                    return true;
+                }
+            }
+
+            @Override
+            public Item<T> next() {
+                int current = index++;
+                try {
+                    if (ended || !values.hasNextValue()) {
+                        throw new NoSuchElementException();
+                    }
+                    return new Item<>(current, values.nextValue(), null);
+                } catch (DatabindException e) {
+                    return new Item<>(current, null, e.getOriginalMessage());
+                } catch (JsonProcessingException e) {
+                    ended = true;
+                    return new Item<>(current, null, "Malformed JSON: " + e.getOriginalMessage());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    public record Item<T>(int index, T value, String error) {
+    }
+}
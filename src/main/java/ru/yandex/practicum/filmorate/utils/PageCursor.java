@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a page: the row id and, for non-id orderings, the value of the sort key.
+ * Clients get it as an opaque string and pass it back in the {@code after} parameter.
+ */
+public record PageCursor(Long sortKey, long id) {
+
+    public static PageCursor of(long id) {
+        return new PageCursor(null, id);
+    }
+
+    public static PageCursor of(long sortKey, long id) {
+        return new PageCursor(sortKey, id);
+    }
+
+    public static PageCursor parse(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator < 0) {
+                return of(Long.parseLong(decoded));
+            }
+            return of(Long.parseLong(decoded.substring(0, separator)), Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid page cursor " + cursor);
+        }
+    }
+
+    public long sortKeyOrThrow() {
+        if (sortKey == null) {
+            throw new ValidationException("Page cursor doesn't match the requested ordering");
+        }
+        return sortKey;
+    }
+
+    public String encode() {
+        String raw = sortKey == null ? Long.toString(id) : sortKey + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
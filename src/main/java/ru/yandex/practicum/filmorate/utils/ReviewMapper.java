@@ -6,14 +6,14 @@ import ru.yandex.practicum.filmorate.model.Review;
 
 @UtilityClass
 public class ReviewMapper {
-    public ReviewDTO mapToDto(Review review, int useful) {
+    public ReviewDTO mapToDto(Review review) {
         return new ReviewDTO()
                 .setReviewId(review.getId())
                 .setContent(review.getContent())
                 .setIsPositive(review.getIsPositive())
                 .setUserId(review.getUserId())
                 .setFilmId(review.getFilmId())
-                .setUseful(useful);
+                .setUseful(review.getUseful());
     }
 
     public Review mapToReview(ReviewDTO dto) {
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Strategy;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Logs streamed bodies without their content: responses of the streaming endpoints and uploads of the
+ * batch imports. Logbook copies a logged body into memory, which would keep a whole streamed list, an
+ * open event stream or a whole upload on the heap.
+ */
+@Component
+public class StreamingLogStrategy implements Strategy {
+    private static final List<String> STREAMING_TYPES =
+            List.of(MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE);
+
+    @Override
+    public HttpRequest process(HttpRequest request) throws IOException {
+        return isStreamedUpload(request) ? request.withoutBody() : request.withBody();
+    }
+
+    @Override
+    public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+        return isStreaming(request) ? response.withoutBody() : response.withBody();
+    }
+
+    private static boolean isStreamedUpload(HttpRequest request) {
+        if ("POST".equals(request.getMethod()) && request.getPath().endsWith("/batch")) {
+            return true;
+        }
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains(MediaType.APPLICATION_NDJSON_VALUE);
+    }
+
+    private static boolean isStreaming(HttpRequest request) {
+        String query = request.getQuery();
+        if (query != null && Arrays.asList(query.split("&")).contains("stream=true")) {
+            return true;
+        }
+        List<String> accept = request.getHeaders().get(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return false;
+        }
+        return accept.stream()
+                .map(value -> value.toLowerCase(Locale.ROOT))
+                .anyMatch(value -> STREAMING_TYPES.stream().anyMatch(value::contains));
+    }
+}
@@ -25,6 +25,10 @@ create TABLE IF NOT EXISTS PUBLIC.FILMS (
 	CONSTRAINT FILMS_MPA_FK FOREIGN KEY (MPA_ID) REFERENCES PUBLIC.MPA(MPA_ID)
 );
 
+alter table PUBLIC.FILMS add column IF NOT EXISTS
+	RELEASE_YEAR INTEGER GENERATED ALWAYS AS (EXTRACT(YEAR FROM RELEASE_DATE));
+create index IF NOT EXISTS FILMS_RELEASE_YEAR_IDX on PUBLIC.FILMS (RELEASE_YEAR);
+
 -- PUBLIC.USERS definition
 
 create TABLE IF NOT EXISTS PUBLIC.USERS (
@@ -61,6 +65,16 @@ create TABLE IF NOT EXISTS PUBLIC.REVIEW_LIKES (
 	CONSTRAINT REVIEW_LIKES_REVIEWS_FK_2 FOREIGN KEY (REVIEW_ID) REFERENCES PUBLIC.REVIEWS(REVIEW_ID) ON delete CASCADE
 );
 
+alter table PUBLIC.REVIEWS add column IF NOT EXISTS USEFUL INTEGER;
+update PUBLIC.REVIEWS R set USEFUL = (
+	select COALESCE(SUM(case when L.IS_DISLIKE then -1 else 1 end), 0)
+	from PUBLIC.REVIEW_LIKES L where L.REVIEW_ID = R.REVIEW_ID)
+where USEFUL is null;
+alter table PUBLIC.REVIEWS alter column USEFUL set default 0;
+alter table PUBLIC.REVIEWS alter column USEFUL set not null;
+create index IF NOT EXISTS REVIEWS_USEFUL_IDX on PUBLIC.REVIEWS (USEFUL DESC, REVIEW_ID);
+create index IF NOT EXISTS REVIEWS_FILM_USEFUL_IDX on PUBLIC.REVIEWS (FILM_ID, USEFUL DESC, REVIEW_ID);
+
 -- PUBLIC.GENRES definition
 
 create TABLE IF NOT EXISTS PUBLIC.GENRES (
@@ -86,6 +100,8 @@ create TABLE IF NOT EXISTS PUBLIC.FILM_GENRES (
 	CONSTRAINT FILM_GENRES_GENRES_FK FOREIGN KEY (GENRE_ID) REFERENCES PUBLIC.GENRES(GENRE_ID)
 );
 
+create index IF NOT EXISTS FILM_GENRES_GENRE_IDX on PUBLIC.FILM_GENRES (GENRE_ID, FILM_ID);
+
 -- PUBLIC.DIRECTORS definition
 
 create TABLE IF NOT EXISTS PUBLIC.DIRECTORS (
@@ -114,6 +130,8 @@ create TABLE IF NOT EXISTS PUBLIC.FRIENDS (
 	CONSTRAINT FRIENDS_USERS_FK_2 FOREIGN KEY (FRIEND_ID) REFERENCES PUBLIC.USERS(USER_ID) ON DELETE CASCADE
 );
 
+create index IF NOT EXISTS FRIENDS_FRIEND_IDX on PUBLIC.FRIENDS (FRIEND_ID, USER_ID);
+
 -- PUBLIC.FILM_LIKES definition
 
 create TABLE IF NOT EXISTS PUBLIC.FILM_LIKES (
@@ -125,6 +143,28 @@ create TABLE IF NOT EXISTS PUBLIC.FILM_LIKES (
 	CONSTRAINT FILM_LIKES_USERS_FK FOREIGN KEY (USER_ID) REFERENCES PUBLIC.USERS(USER_ID)  ON delete CASCADE
 );
 
+create index IF NOT EXISTS FILM_LIKES_USER_IDX on PUBLIC.FILM_LIKES (USER_ID, FILM_ID);
+
+-- PUBLIC.FILM_RATING_STATS definition
+
+create TABLE IF NOT EXISTS PUBLIC.FILM_RATING_STATS (
+	FILM_ID INTEGER NOT NULL,
+	MARK_SUM DOUBLE PRECISION DEFAULT 0 NOT NULL,
+	MARK_COUNT INTEGER DEFAULT 0 NOT NULL,
+	LIKE_COUNT INTEGER DEFAULT 0 NOT NULL,
+	RATE DOUBLE PRECISION GENERATED ALWAYS AS (CASE WHEN MARK_COUNT > 0 THEN MARK_SUM / MARK_COUNT END),
+	CONSTRAINT FILM_RATING_STATS_PK PRIMARY KEY (FILM_ID),
+	CONSTRAINT FILM_RATING_STATS_FILMS_FK FOREIGN KEY (FILM_ID) REFERENCES PUBLIC.FILMS(FILM_ID) ON delete CASCADE
+);
+
+insert into PUBLIC.FILM_RATING_STATS (FILM_ID, MARK_SUM, MARK_COUNT, LIKE_COUNT)
+select F.FILM_ID, COALESCE(SUM(L.MARK), 0), COUNT(L.MARK), COUNT(L.USER_ID)
+from PUBLIC.FILMS F left join PUBLIC.FILM_LIKES L on L.FILM_ID = F.FILM_ID
+where not exists (select 1 from PUBLIC.FILM_RATING_STATS S where S.FILM_ID = F.FILM_ID)
+group by F.FILM_ID;
+
+create index IF NOT EXISTS FILM_RATING_STATS_RATE_IDX on PUBLIC.FILM_RATING_STATS (RATE DESC, FILM_ID);
+
 -- PUBLIC.EVENTS definition
 
 create TABLE IF NOT EXISTS PUBLIC.EVENTS (
@@ -140,9 +180,34 @@ create TABLE IF NOT EXISTS PUBLIC.EVENTS (
 	CONSTRAINT EVENTS_USERS_FK FOREIGN KEY (USER_ID) REFERENCES PUBLIC.USERS(USER_ID) ON delete CASCADE
 );
 
+create index IF NOT EXISTS EVENTS_USER_IDX on PUBLIC.EVENTS (USER_ID, EVENT_ID);
+create index IF NOT EXISTS EVENTS_CREATED_AT_IDX on PUBLIC.EVENTS (CREATED_AT);
+create index IF NOT EXISTS EVENTS_USER_TYPE_CREATED_AT_IDX on PUBLIC.EVENTS (USER_ID, EVENT_TYPE, CREATED_AT);
+
 -- PUBLIC.DELETED_USERS_IDS definition
 
 create TABLE IF NOT EXISTS PUBLIC.DELETED_USER_IDS (
 	DELETED_USER_ID INTEGER NOT NULL,
 	CONSTRAINT DELETED_USER_IDS_PK PRIMARY KEY (DELETED_USER_ID)
 );
+
+-- PUBLIC.USER_RECOMMENDATIONS definition
+
+create TABLE IF NOT EXISTS PUBLIC.USER_RECOMMENDATIONS (
+	USER_ID INTEGER NOT NULL,
+	FILM_IDS INTEGER ARRAY NOT NULL,
+	COMPUTED_AT TIMESTAMP NOT NULL,
+	CONSTRAINT USER_RECOMMENDATIONS_PK PRIMARY KEY (USER_ID),
+	CONSTRAINT USER_RECOMMENDATIONS_USERS_FK FOREIGN KEY (USER_ID) REFERENCES PUBLIC.USERS(USER_ID) ON delete CASCADE
+);
+
+-- PUBLIC.RECOMMENDATION_JOBS definition
+
+create TABLE IF NOT EXISTS PUBLIC.RECOMMENDATION_JOBS (
+	JOB_ID INTEGER NOT NULL AUTO_INCREMENT,
+	STARTED_AT TIMESTAMP NOT NULL,
+	FINISHED_AT TIMESTAMP,
+	LAST_USER_ID INTEGER DEFAULT 0 NOT NULL,
+	PROCESSED_USERS INTEGER DEFAULT 0 NOT NULL,
+	CONSTRAINT RECOMMENDATION_JOBS_PK PRIMARY KEY (JOB_ID)
+);
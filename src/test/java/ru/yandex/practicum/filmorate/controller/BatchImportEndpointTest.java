@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class BatchImportEndpointTest {
+
+    private final MockMvc mockMvc;
+    private final JdbcTemplate jdbc;
+
+    @AfterEach
+    void clearTables() {
+        jdbc.update("DELETE FROM USERS WHERE LOGIN LIKE 'batch%'");
+        jdbc.update("DELETE FROM FILMS WHERE NAME LIKE 'batch %'");
+    }
+
+    @Test
+    void addUsers_fromNdjson() throws Exception {
+        String body = """
+                {"email":"batch1@mail.ru","login":"batch1","birthday":"2000-01-01"}
+                {"email":"not an email","login":"batch2","birthday":"2000-01-01"}
+                {"email":"batch3@mail.ru","login":"batch1","birthday":"2000-01-01"}
+                {"email":"batch4@mail.ru","login":"batch4","name":"Name","birthday":"2000-01-01"}
+                """;
+
+        mockMvc.perform(post("/users/batch").contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.ids[0]").value(notNullValue()))
+                .andExpect(jsonPath("$.ids[1]").value(nullValue()))
+                .andExpect(jsonPath("$.ids[2]").value(nullValue()))
+                .andExpect(jsonPath("$.ids[3]").value(notNullValue()))
+                .andExpect(jsonPath("$.errors[*].index", contains(1, 2)))
+                .andExpect(jsonPath("$.errors[1].message").value("User with this email or login already exists"));
+
+        assertThat(jdbc.queryForList("SELECT NAME FROM USERS WHERE LOGIN LIKE 'batch%' ORDER BY USER_ID", String.class))
+                .containsExactly("batch1", "Name");
+    }
+
+    @Test
+    void addFilms_fromJsonArray() throws Exception {
+        String body = """
+                [
+                  {"name":"batch one","description":"d","releaseDate":"2000-01-01","duration":100,"mpa":{"id":1}},
+                  {"name":"batch two","description":"d","releaseDate":"2000-01-01","duration":-5,"mpa":{"id":1}},
+                  {"name":"batch three","description":"d","releaseDate":"2000-01-01","duration":90,"mpa":{"id":99}},
+                  {"name":"batch four","description":"d","releaseDate":"2001-01-01","duration":90,"mpa":{"id":2}}
+                ]""";
+
+        mockMvc.perform(post("/films/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.errors[*].index", contains(1, 2)))
+                .andExpect(jsonPath("$.errors[0].message").value("duration: must be greater than 0"));
+
+        assertThat(jdbc.queryForList("SELECT NAME FROM FILMS WHERE NAME LIKE 'batch %' ORDER BY FILM_ID", String.class))
+                .containsExactly("batch one", "batch four");
+    }
+}
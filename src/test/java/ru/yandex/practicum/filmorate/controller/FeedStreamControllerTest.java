@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.service.EventWriter;
+import ru.yandex.practicum.filmorate.service.FeedStreamService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Subscribes to the feed stream and publishes events through the event writer, as the services do.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FeedStreamControllerTest {
+    private static final long AWAIT_MS = 5000;
+
+    private final MockMvc mockMvc;
+    private final JdbcTemplate jdbc;
+    private final EventWriter eventWriter;
+    private final FeedStreamService feedStreamService;
+
+    private long userId;
+
+    @BeforeEach
+    void initDb() throws Exception {
+        String user = mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"stream@mail.ru\",\"login\":\"stream\",\"birthday\":\"2000-01-01\"}"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        userId = JsonPath.<Number>read(user, "$.id").longValue();
+    }
+
+    @AfterEach
+    void clearTables() {
+        ReflectionTestUtils.setField(feedStreamService, "replayLimit", 1000);
+        jdbc.update("DELETE FROM EVENTS WHERE USER_ID = ?", userId);
+        jdbc.update("DELETE FROM USERS WHERE USER_ID = ?", userId);
+    }
+
+    @Test
+    void streamFeed_sendsPublishedEvents() throws Exception {
+        int subscribers = feedStreamService.getSubscriberCount();
+        MvcResult result = subscribe(get("/users/{id}/feed/stream", userId));
+        assertThat(feedStreamService.getSubscriberCount()).isEqualTo(subscribers + 1);
+
+        List<Long> ids = publish(2);
+
+        String body = await(result, content -> sentIds(content).size() == 2);
+        assertThat(sentIds(body)).isEqualTo(ids);
+        assertThat(body).contains("event:event\ndata:{\"timestamp\":1,\"userId\":" + userId);
+
+        result.getRequest().getAsyncContext().complete();
+        assertThat(feedStreamService.getSubscriberCount()).isEqualTo(subscribers);
+    }
+
+    @Test
+    void streamFeed_replaysAfterLastEventIdUpToLimit() throws Exception {
+        List<Long> ids = publish(5);
+        ReflectionTestUtils.setField(feedStreamService, "replayLimit", 3);
+
+        MvcResult result = subscribe(get("/users/{id}/feed/stream", userId)
+                .header("Last-Event-ID", ids.get(0)));
+
+        // more events are missed than replayed, so the stream ends and the client resumes from the last id
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+        assertThat(sentIds(body)).isEqualTo(ids.subList(1, 4));
+
+        MvcResult resumed = subscribe(get("/users/{id}/feed/stream", userId)
+                .header("Last-Event-ID", ids.get(3)));
+        assertThat(sentIds(await(resumed, content -> sentIds(content).size() == 1))).containsExactly(ids.get(4));
+        resumed.getRequest().getAsyncContext().complete();
+    }
+
+    @Test
+    void streamFeed_skipsEventsSentByReplay() throws Exception {
+        List<Long> ids = publish(3);
+
+        MvcResult result = subscribe(get("/users/{id}/feed/stream", userId)
+                .header("Last-Event-ID", ids.get(1)));
+        await(result, content -> sentIds(content).size() == 1);
+
+        // events written while the replay ran reach the subscriber live as well
+        ReflectionTestUtils.invokeMethod(feedStreamService, "publish", List.of(event(ids.get(1)), event(ids.get(2))));
+        long next = publish(1).get(0);
+
+        String body = await(result, content -> sentIds(content).contains(next));
+        assertThat(sentIds(body)).containsExactly(ids.get(2), next);
+        result.getRequest().getAsyncContext().complete();
+    }
+
+    private MvcResult subscribe(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        return mockMvc.perform(requestBuilder.accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private List<Long> publish(int count) {
+        long lastId = jdbc.queryForObject("SELECT COALESCE(MAX(EVENT_ID), 0) FROM EVENTS WHERE USER_ID = ?",
+                Long.class, userId);
+        for (int i = 0; i < count; i++) {
+            eventWriter.publish(event(null));
+        }
+        eventWriter.flush();
+        return jdbc.queryForList("SELECT EVENT_ID FROM EVENTS WHERE USER_ID = ? AND EVENT_ID > ? ORDER BY EVENT_ID",
+                Long.class, userId, lastId);
+    }
+
+    private Event event(Long eventId) {
+        return Event.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .eventType("LIKE")
+                .operation("ADD")
+                .entityId(1L)
+                .timestamp(1L)
+                .build();
+    }
+
+    private static String await(MvcResult result, Predicate<String> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        String content = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        while (!condition.test(content) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        }
+        return content;
+    }
+
+    private static List<Long> sentIds(String content) {
+        return content.lines()
+                .filter(line -> line.startsWith("id:"))
+                .map(line -> Long.parseLong(line.substring("id:".length())))
+                .toList();
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Streams the films through the HTTP endpoints, with more rows than one batch of assembled films.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmControllerStreamingTest {
+    private static final int ROWS = 2500;
+
+    private final MockMvc mockMvc;
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+
+    @BeforeEach
+    void initDb() {
+        jdbc.update("""
+                INSERT INTO FILMS (NAME, DESCRIPTION, RELEASE_DATE, DURATION, MPA_ID)
+                SELECT 'streamed ' || X, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, ?)""", ROWS);
+    }
+
+    @AfterEach
+    void clearTables() {
+        jdbc.update("DELETE FROM FILMS WHERE NAME LIKE 'streamed %'");
+    }
+
+    @Test
+    void streamAllFilms_asJsonArray() throws Exception {
+        String body = perform(get("/films?stream=true"), MediaType.APPLICATION_JSON);
+
+        JsonNode films = objectMapper.readTree(body);
+        assertThat(films.isArray()).isTrue();
+        assertThat(films).hasSize(ROWS);
+        assertThat(films.get(0).get("name").asText()).isEqualTo("streamed 1");
+        assertThat(films.get(ROWS - 1).get("name").asText()).isEqualTo("streamed " + ROWS);
+    }
+
+    @Test
+    void streamAllFilms_asNdjson() throws Exception {
+        String body = perform(get("/films").accept(MediaType.APPLICATION_NDJSON), MediaType.APPLICATION_NDJSON);
+
+        List<String> lines = body.lines().toList();
+        assertThat(lines).hasSize(ROWS);
+        assertThat(objectMapper.readTree(lines.get(0)).get("name").asText()).isEqualTo("streamed 1");
+        assertThat(objectMapper.readTree(lines.get(ROWS - 1)).get("mpa").get("id").asInt()).isEqualTo(1);
+    }
+
+    private String perform(RequestBuilder requestBuilder, MediaType contentType) throws Exception {
+        MvcResult started = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(contentType))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports a FILMS table larger than the heap over HTTP. Runs in the {@code export-heap-test} profile,
+ * which gives the test JVM a small heap: {@code mvn test -P export-heap-test}. The database is kept in
+ * a file, so the table itself doesn't take the heap.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "filmorate.export.rows", matches = "\\d+")
+class FilmExportHeapTest {
+    private static final long ROWS = Long.getLong("filmorate.export.rows", 0);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @DynamicPropertySource
+    static void fileDatabase(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("filmorate-export").toAbsolutePath().toString();
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + directory + "/filmorate;CACHE_SIZE=8192");
+    }
+
+    @BeforeAll
+    void initDb() {
+        jdbc.update("""
+                INSERT INTO FILMS (NAME, DESCRIPTION, RELEASE_DATE, DURATION, MPA_ID)
+                SELECT 'film ' || X, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, ?)""", ROWS);
+    }
+
+    @Test
+    void streamAllFilms_asNdjson() throws Exception {
+        HttpResponse<InputStream> response = client.send(request("/films").header("Accept", "application/x-ndjson")
+                .build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        long lines = 0;
+        CountingInputStream in = new CountingInputStream(response.body());
+        try (in) {
+            int read;
+            byte[] buffer = new byte[8192];
+            while ((read = in.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+
+        assertThat(lines).isEqualTo(ROWS);
+        assertThat(in.count).isGreaterThan(Runtime.getRuntime().maxMemory());
+    }
+
+    @Test
+    void streamAllFilms_asJsonArray() throws Exception {
+        HttpResponse<InputStream> response = client.send(request("/films?stream=true").build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        long films = 0;
+        CountingInputStream in = new CountingInputStream(response.body());
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            assertThat(parser.nextToken()).isEqualTo(JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                films++;
+            }
+        }
+
+        assertThat(films).isEqualTo(ROWS);
+        assertThat(in.count).isGreaterThan(Runtime.getRuntime().maxMemory());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
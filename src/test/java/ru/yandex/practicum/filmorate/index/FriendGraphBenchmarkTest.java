@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.yandex.practicum.filmorate.repository.UserRepository;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Path search on a synthetic power-law graph built by preferential attachment.
+ * Run with {@code mvn test -Dtest=FriendGraphBenchmarkTest -Dfilmorate.benchmarks=true}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "filmorate.benchmarks", matches = "true")
+class FriendGraphBenchmarkTest {
+
+    private static final int USERS = 1_000_000;
+    private static final int LINKS_PER_USER = 3;
+    private static final int QUERIES = 10_000;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findPath_onMillionUsers() {
+        UserRepository userRepository = mock(UserRepository.class);
+        doAnswer(invocation -> {
+            generatePowerLawGraph(invocation.getArgument(0));
+            return null;
+        }).when(userRepository).forEachFriendship(any(BiConsumer.class));
+        FriendGraph graph = new FriendGraph(userRepository);
+        graph.rebuild();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            graph.findPath(1 + random.nextInt(USERS), 1 + random.nextInt(USERS), 6);
+        }
+
+        long found = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            long fromId = 1 + random.nextInt(USERS);
+            long toId = 1 + random.nextInt(USERS);
+            List<Long> path = graph.findPath(fromId, toId, 6);
+            if (!path.isEmpty()) {
+                found++;
+                assertThat(path.get(0)).isEqualTo(fromId);
+                assertThat(path.get(path.size() - 1)).isEqualTo(toId);
+                for (int j = 1; j < path.size(); j++) {
+                    assertThat(graph.getFriendIds(path.get(j - 1))).contains(path.get(j));
+                }
+            }
+        }
+        long micros = (System.nanoTime() - started) / 1000;
+
+        log.info(String.format("%d paths found of %d queries, %.1f us per query",
+                found, QUERIES, (double) micros / QUERIES));
+        assertThat(found).isPositive();
+    }
+
+    private static void generatePowerLawGraph(BiConsumer<Integer, Integer> consumer) {
+        Random random = new Random(7);
+        int[] endpoints = new int[2 * USERS * LINKS_PER_USER];
+        int size = 0;
+        for (int user = 1; user <= USERS; user++) {
+            for (int link = 0; link < LINKS_PER_USER && user > 1; link++) {
+                int friend = size == 0 ? 1 : endpoints[random.nextInt(size)];
+                if (friend == user) {
+                    continue;
+                }
+                consumer.accept(user, friend);
+                if (random.nextBoolean()) {
+                    consumer.accept(friend, user);
+                }
+                endpoints[size++] = user;
+                endpoints[size++] = friend;
+            }
+        }
+    }
+}
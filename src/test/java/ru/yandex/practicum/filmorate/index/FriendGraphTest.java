@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.repository.UserRepository;
+
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class FriendGraphTest {
+
+    private FriendGraph graph;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void initGraph() {
+        UserRepository userRepository = mock(UserRepository.class);
+        doAnswer(invocation -> {
+            BiConsumer<Integer, Integer> consumer = invocation.getArgument(0);
+            consumer.accept(1, 3);
+            consumer.accept(1, 2);
+            consumer.accept(2, 3);
+            consumer.accept(2, 4);
+            consumer.accept(3, 4);
+            consumer.accept(3, 5);
+            return null;
+        }).when(userRepository).forEachFriendship(any(BiConsumer.class));
+        graph = new FriendGraph(userRepository);
+        graph.rebuild();
+    }
+
+    @Test
+    void getFriendIds_sorted() {
+        assertThat(graph.getFriendIds(1)).containsExactly(2L, 3L);
+        assertThat(graph.getFriendIds(5)).isEmpty();
+        assertThat(graph.getFriendIds(100)).isEmpty();
+    }
+
+    @Test
+    void getCommonFriendIds() {
+        assertThat(graph.getCommonFriendIds(1, 2)).containsExactly(3L);
+        assertThat(graph.getCommonFriendIds(2, 3)).containsExactly(4L);
+        assertThat(graph.getCommonFriendIds(1, 5)).isEmpty();
+    }
+
+    @Test
+    void getSuggestions_rankedByMutualFriends() {
+        assertThat(graph.getSuggestions(1, 10)).containsExactly(4L, 5L);
+        assertThat(graph.getSuggestions(1, 1)).containsExactly(4L);
+    }
+
+    @Test
+    void findPath_followsFriendshipDirection() {
+        assertThat(graph.findPath(1, 5, 6)).containsExactly(1L, 3L, 5L);
+        assertThat(graph.findPath(2, 5, 6)).containsExactly(2L, 3L, 5L);
+        assertThat(graph.findPath(5, 1, 6)).isEmpty();
+        assertThat(graph.findPath(4, 4, 6)).containsExactly(4L);
+    }
+
+    @Test
+    void findPath_respectsDepthCap() {
+        graph.addFriend(5, 6);
+
+        assertThat(graph.findPath(1, 6, 3)).containsExactly(1L, 3L, 5L, 6L);
+        assertThat(graph.findPath(1, 6, 2)).isEmpty();
+        assertThat(graph.findPath(1, 100, 6)).isEmpty();
+    }
+
+    @Test
+    void addFriend_growsGraph() {
+        graph.addFriend(10, 1);
+
+        assertThat(graph.getFriendIds(10)).containsExactly(1L);
+        assertThat(graph.getSuggestions(10, 10)).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void removeFriend_and_removeUser() {
+        graph.removeFriend(1, 2);
+        assertThat(graph.getFriendIds(1)).containsExactly(3L);
+
+        graph.removeUser(3);
+        assertThat(graph.getFriendIds(1)).isEmpty();
+        assertThat(graph.getFriendIds(2)).containsExactly(4L);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdBitmapTest {
+
+    private final IdBitmap bitmap = new IdBitmap();
+
+    @Test
+    void add_growsPastInitialCapacity() {
+        bitmap.add(1);
+        bitmap.add(63);
+        bitmap.add(64);
+        bitmap.add(1_000_000);
+
+        assertThat(bitmap.contains(1)).isTrue();
+        assertThat(bitmap.contains(63)).isTrue();
+        assertThat(bitmap.contains(64)).isTrue();
+        assertThat(bitmap.contains(1_000_000)).isTrue();
+        assertThat(bitmap.contains(2)).isFalse();
+        assertThat(bitmap.contains(999_999)).isFalse();
+        assertThat(bitmap.contains(5_000_000)).isFalse();
+        assertThat(bitmap.contains(-1)).isFalse();
+    }
+
+    @Test
+    void remove_keepsNeighbours() {
+        bitmap.add(10);
+        bitmap.add(11);
+        bitmap.remove(10);
+        bitmap.remove(7_000_000);
+
+        assertThat(bitmap.contains(10)).isFalse();
+        assertThat(bitmap.contains(11)).isTrue();
+    }
+
+    @Test
+    void findMissing_returnsFirstAbsentId() {
+        bitmap.add(1);
+        bitmap.add(2);
+
+        assertThat(bitmap.findMissing(1, 2)).isEmpty();
+        assertThat(bitmap.findMissing(1, 5, 6)).isEqualTo(OptionalLong.of(5));
+    }
+}
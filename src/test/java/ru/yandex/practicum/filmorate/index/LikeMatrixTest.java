@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LikeMatrixTest {
+
+    private LikeMatrix matrix;
+
+    @BeforeEach
+    void initMatrix() {
+        FilmRepository filmRepository = mock(FilmRepository.class);
+        when(filmRepository.findAllLikedFilmIds()).thenReturn(Map.of(
+                1L, List.of(1L, 2L),
+                2L, List.of(1L, 2L, 3L),
+                3L, List.of(1L, 4L, 5L, 6L),
+                4L, List.of(7L)));
+        matrix = new LikeMatrix(filmRepository);
+        ReflectionTestUtils.setField(matrix, "neighbours", 20);
+        matrix.rebuild();
+    }
+
+    @Test
+    void recommend_ranksFilmsBySimilarityOfNeighbours() {
+        assertThat(matrix.recommend(1L)).containsExactly(3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    void recommend_whenNoCommonLikes() {
+        assertThat(matrix.recommend(4L)).isEmpty();
+        assertThat(matrix.recommend(5L)).isEmpty();
+    }
+
+    @Test
+    void recommend_takesOnlyTopNeighbours() {
+        ReflectionTestUtils.setField(matrix, "neighbours", 1);
+
+        assertThat(matrix.recommend(1L)).containsExactly(3L);
+    }
+
+    @Test
+    void addLike_and_removeLike() {
+        matrix.addLike(4L, 1L);
+        assertThat(matrix.recommend(4L)).contains(2L, 3L);
+
+        matrix.removeLike(4L, 1L);
+        assertThat(matrix.recommend(4L)).isEmpty();
+    }
+
+    @Test
+    void removeUser_and_removeFilm() {
+        matrix.removeUser(2L);
+        assertThat(matrix.recommend(1L)).containsExactly(4L, 5L, 6L);
+
+        matrix.removeFilm(4L);
+        assertThat(matrix.recommend(1L)).containsExactly(5L, 6L);
+    }
+}
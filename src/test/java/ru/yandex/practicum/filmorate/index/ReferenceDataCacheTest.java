@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.repository.DirectorRepository;
+import ru.yandex.practicum.filmorate.repository.GenreRepository;
+import ru.yandex.practicum.filmorate.repository.MpaRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReferenceDataCacheTest {
+
+    private ReferenceDataCache cache;
+
+    @BeforeEach
+    void initCache() {
+        MpaRepository mpaRepository = mock(MpaRepository.class);
+        GenreRepository genreRepository = mock(GenreRepository.class);
+        DirectorRepository directorRepository = mock(DirectorRepository.class);
+        when(mpaRepository.findAll()).thenReturn(List.of(new Mpa(1, "G"), new Mpa(2, "PG")));
+        when(genreRepository.findAll()).thenReturn(List.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        when(directorRepository.findAll()).thenReturn(List.of(new Director(5, "Nolan"), new Director(2, "Lynch")));
+        cache = new ReferenceDataCache(mpaRepository, genreRepository, directorRepository);
+        cache.rebuild();
+    }
+
+    @Test
+    void get_countsHitsAndMisses() {
+        assertThat(cache.getMpa(2)).contains(new Mpa(2, "PG"));
+        assertThat(cache.getGenre(1)).contains(new Genre(1, "Комедия"));
+        assertThat(cache.getGenre(7)).isEmpty();
+        assertThat(cache.getDirector(-1)).isEmpty();
+
+        assertThat(cache.getStats()).isEqualTo(new ReferenceDataCache.Stats(2, 2));
+    }
+
+    @Test
+    void getAllDirectors_sortedById() {
+        assertThat(cache.getAllDirectors()).extracting(Director::getId).containsExactly(2, 5);
+    }
+
+    @Test
+    void putDirector_and_removeDirector() {
+        Director added = new Director(9, "Fincher");
+        cache.putDirector(added);
+        cache.putDirector(new Director(2, "David Lynch"));
+        added.setName("changed");
+
+        assertThat(cache.getDirector(9)).contains(new Director(9, "Fincher"));
+        assertThat(cache.getDirector(2)).contains(new Director(2, "David Lynch"));
+
+        cache.removeDirector(5);
+        assertThat(cache.getDirector(5)).isEmpty();
+        assertThat(cache.getAllDirectors()).extracting(Director::getId).containsExactly(2, 9);
+    }
+}
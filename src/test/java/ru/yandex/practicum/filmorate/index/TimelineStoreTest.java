@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.repository.EventRepository;
+import ru.yandex.practicum.filmorate.repository.UserRepository;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TimelineStoreTest {
+
+    private FriendGraph graph;
+    private TimelineStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void initStore() {
+        UserRepository userRepository = mock(UserRepository.class);
+        doAnswer(invocation -> {
+            BiConsumer<Integer, Integer> consumer = invocation.getArgument(0);
+            consumer.accept(1, 2);
+            consumer.accept(1, 3);
+            consumer.accept(4, 2);
+            return null;
+        }).when(userRepository).forEachFriendship(any(BiConsumer.class));
+        graph = new FriendGraph(userRepository);
+        graph.rebuild();
+
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.streamAll(anyInt())).thenReturn(Stream.empty());
+        store = new TimelineStore(graph, eventRepository);
+        ReflectionTestUtils.setField(store, "capacity", 3);
+        // user 2 has two followers, so their events are merged on read
+        ReflectionTestUtils.setField(store, "fanOutLimit", 1);
+        store.rebuild();
+    }
+
+    @Test
+    void getTimeline_mergesFannedOutAndPulledEvents() {
+        store.appendAll(List.of(event(1, 2), event(2, 3), event(3, 2), event(4, 1), event(5, 3)));
+
+        assertThat(store.getTimeline(1, Long.MAX_VALUE, 10)).extracting(Event::getEventId).containsExactly(5L, 3L, 2L, 1L);
+        assertThat(store.getTimeline(4, Long.MAX_VALUE, 10)).extracting(Event::getEventId).containsExactly(3L, 1L);
+        assertThat(store.getTimeline(1, 3, 1)).extracting(Event::getEventId).containsExactly(2L);
+        assertThat(store.getTimeline(2, Long.MAX_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    void getTimeline_keepsLatestEvents() {
+        store.appendAll(List.of(event(1, 3), event(2, 3), event(3, 3), event(4, 3), event(5, 3)));
+
+        assertThat(store.getTimeline(1, Long.MAX_VALUE, 10)).extracting(Event::getEventId).containsExactly(5L, 4L, 3L);
+    }
+
+    @Test
+    void addFriend_backfillsTimeline() {
+        store.appendAll(List.of(event(1, 3), event(2, 2), event(3, 3)));
+
+        graph.addFriend(4, 3);
+        store.addFriend(4, 3);
+
+        assertThat(store.getTimeline(4, Long.MAX_VALUE, 10)).extracting(Event::getEventId).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    void getTimeline_keepsPulledEventsAfterAuthorDropsUnderLimit() {
+        store.appendAll(List.of(event(1, 2), event(2, 2)));
+
+        graph.removeFriend(4, 2);
+        store.appendAll(List.of(event(3, 2)));
+
+        assertThat(store.getTimeline(1, Long.MAX_VALUE, 10)).extracting(Event::getEventId).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    void getTimeline_skipsEventsOfFormerFriends() {
+        store.appendAll(List.of(event(1, 3), event(2, 2)));
+
+        graph.removeFriend(1, 3);
+
+        assertThat(store.getTimeline(1, Long.MAX_VALUE, 10)).extracting(Event::getEventId).containsExactly(2L);
+    }
+
+    private static Event event(long eventId, long userId) {
+        return Event.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .eventType("LIKE")
+                .operation("ADD")
+                .entityId(1L)
+                .timestamp(0L)
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TinyLfuCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private String load(Long key) {
+        loads.incrementAndGet();
+        return "film-" + key;
+    }
+
+    @Test
+    void get_loadsOnceAndCountsHits() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(1000, 100, value -> 10);
+
+        assertThat(cache.get(1L, this::load)).isEqualTo("film-1");
+        assertThat(cache.get(1L, this::load)).isEqualTo("film-1");
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getStats().hits()).isEqualTo(1);
+        assertThat(cache.getStats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void get_keepsWeightWithinBound() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(100, 10, value -> 10);
+
+        for (long key = 0; key < 50; key++) {
+            cache.get(key, this::load);
+        }
+
+        assertThat(cache.getStats().weightedSize()).isLessThanOrEqualTo(100);
+        assertThat(cache.getStats().evictions()).isEqualTo(40);
+    }
+
+    @Test
+    void get_oneHitWondersDoNotEvictPopularEntries() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(100, 1000, value -> 10);
+        for (int round = 0; round < 5; round++) {
+            for (long key = 0; key < 9; key++) {
+                cache.get(key, this::load);
+            }
+        }
+
+        for (long key = 1000; key < 2000; key++) {
+            cache.get(key, this::load);
+        }
+        loads.set(0);
+        for (long key = 0; key < 9; key++) {
+            cache.get(key, this::load);
+        }
+
+        assertThat(loads.get()).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void invalidate_dropsEntries() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(1000, 100, value -> 10);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        cache.get(3L, this::load);
+
+        cache.invalidate(1L);
+        cache.invalidateAll(List.of(2L));
+        cache.invalidateIf(value -> value.endsWith("3"));
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        cache.get(3L, this::load);
+
+        assertThat(loads).hasValue(6);
+    }
+
+    @Test
+    void get_doesNotCacheValueLoadedDuringInvalidation() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(1000, 100, value -> 10);
+
+        cache.get(1L, key -> {
+            cache.invalidate(key);
+            return load(key);
+        });
+        cache.get(1L, this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void get_cachesValueLoadedWhileOtherKeyInvalidated() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(1000, 100, value -> 10);
+
+        cache.get(1L, key -> {
+            cache.invalidate(2L);
+            return load(key);
+        });
+        cache.get(1L, this::load);
+
+        assertThat(loads).hasValue(1);
+    }
+}
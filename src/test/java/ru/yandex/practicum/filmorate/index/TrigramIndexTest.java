@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void initIndex() {
+        index = new TrigramIndex();
+        index.put(1, "Криминальное чтиво");
+        index.put(2, "Inception");
+        index.put(3, "Интерстеллар");
+    }
+
+    @Test
+    void search_foldsCyrillicAndLatinCase() {
+        assertThat(index.search("КРИМИНАЛ")).containsExactly(1L);
+        assertThat(index.search("чТиВо")).containsExactly(1L);
+        assertThat(index.search("INCEP")).containsExactly(2L);
+    }
+
+    @Test
+    void search_verifiesCandidates() {
+        index.put(4, "абв вга");
+
+        assertThat(index.search("абвга")).isEmpty();
+    }
+
+    @Test
+    void search_whenQueryIsShorterThanTrigram() {
+        assertThat(index.search("ин")).containsExactly(1L, 3L);
+        assertThat(index.search("")).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void put_replacesText() {
+        index.put(2, "Начало");
+
+        assertThat(index.search("incep")).isEmpty();
+        assertThat(index.search("нача")).containsExactly(2L);
+    }
+
+    @Test
+    void remove() {
+        index.remove(1);
+
+        assertThat(index.search("чтиво")).isEmpty();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventArchiveTest {
+
+    @TempDir
+    private Path directory;
+
+    private EventArchive archive;
+
+    @BeforeEach
+    void initArchive() {
+        archive = openArchive();
+    }
+
+    @Test
+    void findByUserId_readsAcrossSegmentsAndBlocks() {
+        archive.append(List.of(event(1, 1), event(2, 2), event(3, 1), event(4, 3), event(5, 1)));
+        archive.append(List.of(event(6, 2), event(7, 1)));
+
+        assertThat(archive.getMaxEventId()).isEqualTo(7);
+        assertThat(archive.findByUserId(1, 0, 10)).extracting(Event::getEventId).containsExactly(1L, 3L, 5L, 7L);
+        assertThat(archive.findByUserId(1, 3, 2)).extracting(Event::getEventId).containsExactly(5L, 7L);
+        assertThat(archive.findByUserId(2, 0, 10)).extracting(Event::getEventId).containsExactly(2L, 6L);
+        assertThat(archive.findByUserId(4, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void findAll_readsAllUsersInIdOrderAcrossSegments() {
+        archive.append(List.of(event(1, 3), event(2, 1), event(3, 2), event(4, 1), event(5, 3)));
+        archive.append(List.of(event(6, 2), event(7, 3)));
+
+        assertThat(archive.findAll(0, 10, userId -> true)).extracting(Event::getEventId)
+                .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        assertThat(archive.findAll(2, 4, userId -> true)).extracting(Event::getEventId)
+                .containsExactly(3L, 4L, 5L, 6L);
+        assertThat(archive.findAll(0, 10, userId -> userId != 3)).extracting(Event::getEventId)
+                .containsExactly(2L, 3L, 4L, 6L);
+        assertThat(archive.streamAll(4, userId -> true)).extracting(Event::getEventId)
+                .containsExactly(5L, 6L, 7L);
+    }
+
+    @Test
+    void open_readsWrittenSegments() {
+        Event event = event(1, 1);
+        archive.append(List.of(event));
+
+        EventArchive reopened = openArchive();
+
+        assertThat(reopened.getSegmentCount()).isEqualTo(1);
+        assertThat(reopened.findByUserId(1, 0, 10)).containsExactly(event);
+    }
+
+    private EventArchive openArchive() {
+        EventArchive eventArchive = new EventArchive();
+        ReflectionTestUtils.setField(eventArchive, "directory", directory);
+        ReflectionTestUtils.setField(eventArchive, "blockSize", 2);
+        eventArchive.open();
+        return eventArchive;
+    }
+
+    private static Event event(long eventId, long userId) {
+        return Event.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .eventType("LIKE")
+                .operation("ADD")
+                .entityId(eventId * 10)
+                .timestamp(1_704_110_400_000L + eventId)
+                .build();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({EventRepository.class})
+class EventRepositoryTest {
+
+    private static final long TIMESTAMP = 1_704_110_400_000L;
+
+    private final EventRepository repository;
+    private final JdbcTemplate jdbc;
+
+    @Test
+    void createAll_assignsIdsInOrder() {
+        List<Event> events = List.of(
+                event(1L, "LIKE", 1L),
+                event(2L, "FRIEND", 1L),
+                event(1L, "REVIEW", 5L));
+
+        repository.createAll(events);
+
+        assertThat(events).extracting(Event::getEventId).doesNotContainNull().isSorted();
+        assertThat(repository.getByUserId(1L, 0, 10))
+                .extracting(Event::getEventType)
+                .containsExactly("LIKE", "REVIEW");
+        assertThat(repository.getByUserId(2L, 0, 10))
+                .singleElement()
+                .satisfies(event -> assertThat(event.getEventId()).isEqualTo(events.get(1).getEventId()));
+    }
+
+    @Test
+    void getByUserId_afterEventId() {
+        List<Event> events = List.of(
+                event(1L, "LIKE", 1L),
+                event(1L, "LIKE", 2L),
+                event(2L, "LIKE", 2L),
+                event(1L, "LIKE", 3L));
+        repository.createAll(events);
+
+        assertThat(repository.getByUserId(1L, events.get(0).getEventId(), 10))
+                .extracting(Event::getEntityId)
+                .containsExactly(2L, 3L);
+        assertThat(repository.getByUserId(1L, 0, 2))
+                .extracting(Event::getEntityId)
+                .containsExactly(1L, 2L);
+        assertThat(repository.getByUserId(1L, events.get(3).getEventId(), 10)).isEmpty();
+        assertThat(repository.getByUserId(1L, 0, 1).get(0).getTimestamp()).isEqualTo(TIMESTAMP);
+    }
+
+    @BeforeEach
+    void initDb() {
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tVALUES (1,'email','login','name','2000-01-01')");
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tVALUES (2,'email2','login2','name','2000-01-01')");
+    }
+
+    @AfterEach
+    void clearTables() {
+        jdbc.update("DELETE FROM EVENTS");
+        jdbc.update("DELETE FROM USERS");
+    }
+
+    private static Event event(long userId, String eventType, long entityId) {
+        return Event.builder()
+                .userId(userId)
+                .eventType(eventType)
+                .operation("ADD")
+                .entityId(entityId)
+                .timestamp(TIMESTAMP)
+                .build();
+    }
+}
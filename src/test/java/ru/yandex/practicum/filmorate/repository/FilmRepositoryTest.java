@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.repository;
 
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,22 +11,42 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.index.EntityIdIndex;
+import ru.yandex.practicum.filmorate.index.FilmDtoCache;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.mapper.DirectorRowMapper;
 import ru.yandex.practicum.filmorate.mapper.FilmRowMapper;
 import ru.yandex.practicum.filmorate.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.utils.SearchBy;
+import ru.yandex.practicum.filmorate.model.RatingStats;
+import ru.yandex.practicum.filmorate.service.EventService;
+import ru.yandex.practicum.filmorate.service.FilmLikeWriter;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationJobService;
+import ru.yandex.practicum.filmorate.service.ValidationService;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
 
 @JdbcTest
 @AutoConfigureTestDatabase
@@ -69,6 +90,22 @@ class FilmRepositoryTest {
 
     }
 
+    @Test
+    void saveAll_insertsFilmsWithGenresAndDirectors() {
+        List<Film> saved = repository.saveAll(
+                List.of(newFilm(LocalDate.of(2020, 5, 1)), newFilm(LocalDate.of(2021, 5, 1))),
+                List.of(List.of(1, 2), List.of()),
+                List.of(List.of(), List.of(1)));
+
+        assertThat(saved).extracting(Film::getId).doesNotContainNull().doesNotHaveDuplicates();
+        long first = saved.get(0).getId();
+        long second = saved.get(1).getId();
+        assertThat(repository.findGenreIdsByFilmIds(List.of(first, second))).containsOnlyKeys(first)
+                .containsEntry(first, List.of(1, 2));
+        assertThat(repository.findDirectorIdsByFilmIds(List.of(first, second))).containsOnlyKeys(second);
+        assertThat(ratingStats(second)).containsEntry("LIKE_COUNT", 0);
+    }
+
     @Test
     void update() {
         Film film = new Film()
@@ -132,23 +169,33 @@ class FilmRepositoryTest {
     }
 
     @Test
-    void existById_whenTrue() {
-        boolean existById = repository.existById(1);
-        assertThat(existById).isTrue();
-    }
+    void addLike_whenLikeIsNotSet() {
+        boolean added = repository.addLike(1, 1, 8.0);
 
-    @Test
-    void existById_whenFalse() {
-        boolean existById = repository.existById(6);
-        assertThat(existById).isFalse();
+        assertThat(added).isTrue();
+        assertThat(ratingStats(1)).containsEntry("MARK_COUNT", 1).containsEntry("LIKE_COUNT", 1);
+        assertThat(repository.rateByFilmId(1)).isEqualTo(8.0);
     }
 
     @Test
-    void addLike_whenLikeIsNotSet() {
+    void addLike_whenLikeIsSet() {
+        repository.addLike(1, 1, 8.0);
+
+        boolean added = repository.addLike(1, 1, 4.0);
+
+        assertThat(added).isTrue();
+        assertThat(ratingStats(1)).containsEntry("MARK_COUNT", 1).containsEntry("LIKE_COUNT", 1);
+        assertThat(repository.rateByFilmId(1)).isEqualTo(4.0);
     }
 
     @Test
-    void addLike_whenLikeIsSet() {
+    void addLike_whenMarkIsRemovedByOverwrite() {
+        repository.addLike(1, 1, 8.0);
+
+        repository.addLike(1, 1, null);
+
+        assertThat(ratingStats(1)).containsEntry("MARK_COUNT", 0).containsEntry("LIKE_COUNT", 1);
+        assertThat(repository.rateByFilmId(1)).isNull();
     }
 
     @Test
@@ -159,6 +206,35 @@ class FilmRepositoryTest {
         assertThat(removeLike).isTrue();
     }
 
+    @Test
+    void removeLike_updatesRatingStats() {
+        repository.addLike(1, 1, 7.0);
+
+        repository.removeLike(1, 1);
+
+        assertThat(ratingStats(1)).containsEntry("MARK_COUNT", 0).containsEntry("LIKE_COUNT", 0);
+        assertThat(repository.rateByFilmId(1)).isNull();
+    }
+
+    @Test
+    void applyLikes_movesRatingStatsByChanges() {
+        addUser(2);
+        addUser(3);
+        repository.addLike(1, 1, 4.0);
+        repository.addLike(1, 2, 6.0);
+
+        repository.applyLikes(List.of(
+                FilmLike.of(1, 1, 8.0),
+                FilmLike.absent(1, 2),
+                FilmLike.of(1, 3, null)));
+
+        assertThat(repository.findLike(1, 1)).isEqualTo(FilmLike.of(1, 1, 8.0));
+        assertThat(repository.findLike(1, 2)).isEqualTo(FilmLike.absent(1, 2));
+        assertThat(repository.findLike(1, 3)).isEqualTo(FilmLike.of(1, 3, null));
+        assertThat(repository.findRatingStats(List.of(1L))).containsEntry(1L, new RatingStats(8, 1, 2));
+        assertThat(repository.rateByFilmId(1)).isEqualTo(8.0);
+    }
+
     @Test
     void removeLike_whenLikeIsNotSet() {
         boolean removeLike = repository.removeLike(1, 1);
@@ -166,18 +242,66 @@ class FilmRepositoryTest {
     }
 
     @Test
-    void findGenresByFilmId() {
-        List<Genre> genresByFilmId = repository.findGenresByFilmId(1);
+    void rateByFilmId() {
+        assertThat(repository.rateByFilmId(1)).isNull();
 
-        assertEquals(2, genresByFilmId.size());
-        assertEquals(2, genresByFilmId.getFirst().getId());
-        assertEquals("Драма", genresByFilmId.getFirst().getName());
-        assertEquals(6, genresByFilmId.getLast().getId());
-        assertEquals("Боевик", genresByFilmId.getLast().getName());
+        addUser(2);
+        repository.addLike(1, 1, 6.0);
+        repository.addLike(1, 2, 9.0);
+
+        assertThat(repository.rateByFilmId(1)).isEqualTo(7.5);
     }
 
     @Test
-    void rateByFilmId() {
+    void rebuildRatingStats() {
+        addUser(2);
+        addLike(1, 1);
+        jdbc.update("INSERT INTO FILM_LIKES (FILM_ID, USER_ID, MARK) VALUES (1,2,5)");
+
+        int rebuilt = repository.rebuildRatingStats(1, repository.findMaxFilmId());
+
+        assertThat(rebuilt).isEqualTo(1);
+        assertThat(ratingStats(1)).containsEntry("MARK_COUNT", 1).containsEntry("LIKE_COUNT", 2);
+        assertThat(repository.rateByFilmId(1)).isEqualTo(5.0);
+    }
+
+    @Test
+    void rateByFilmIds() {
+        addFilm(2);
+        addUser(2);
+        repository.addLike(1, 1, 6.0);
+        repository.addLike(1, 2, 9.0);
+        repository.addLike(2, 2, null);
+
+        Map<Long, Double> rates = repository.rateByFilmIds(List.of(1L, 2L));
+
+        assertThat(rates.get(1L)).isEqualTo(7.5);
+        assertThat(rates.get(2L)).isNull();
+    }
+
+    @Test
+    void getFilmsPage_queryCountDoesNotDependOnPageSize() {
+        LongStream.rangeClosed(2, 20).forEach(id -> {
+            addFilm(id);
+            jdbc.update("MERGE INTO FILM_GENRES(FILM_ID, GENRE_ID) VALUES(?,?)", id, 1);
+            jdbc.update("INSERT INTO PUBLIC.FILM_DIRECTORS (FILM_ID, DIRECTOR_ID) VALUES (?, 1)", id);
+        });
+        JdbcTemplate countingJdbc = spy(jdbc);
+        FilmService filmService = filmService(countingJdbc);
+
+        filmService.getFilmsPage(null, 1);
+        int singleFilmInvocations = mockingDetails(countingJdbc).getInvocations().size();
+        clearInvocations(countingJdbc);
+
+        List<FilmDTO> page = filmService.getFilmsPage(null, 20).items();
+        int pageInvocations = mockingDetails(countingJdbc).getInvocations().size();
+
+        assertThat(pageInvocations).isEqualTo(singleFilmInvocations);
+        assertThat(page).hasSize(20).allSatisfy(film -> {
+            assertThat(film.getMpa().getName()).isEqualTo("G");
+            assertThat(film.getGenres()).isNotEmpty();
+            assertThat(film.getDirectors()).extracting(Director::getName).containsExactly("Quentin Tarantino");
+        });
     }
 
     @Test
@@ -201,29 +325,77 @@ class FilmRepositoryTest {
     }
 
     @Test
-    void findFilmByUserIdLike() {
-        List<Film> filmByUserIdLikeBefore = repository.findFilmByUserIdLike(1L);
-        assertThat(filmByUserIdLikeBefore).isEmpty();
+    void findPage() {
+        addFilm(2);
+        addFilm(3);
+
+        assertThat(repository.findPage(0, 2)).extracting(Film::getId).containsExactly(1L, 2L);
+        assertThat(repository.findPage(2, 2)).extracting(Film::getId).containsExactly(3L);
+        assertThat(repository.findPage(3, 2)).isEmpty();
+    }
 
-        addLike(1L, 1L);
+    @Test
+    void findFilmIdsByUserIdLike() {
+        addFilm(2);
+        addLike(2L, 1L);
+
+        assertThat(repository.findFilmIdsByUserIdLike(1L)).containsExactly(2L);
+        assertThat(repository.findAllByIds(List.of(2L, 3L)))
+                .extracting(Film::getId)
+                .containsExactly(2L);
+    }
+
+    @Test
+    void findAllGenreIds() {
+        Map<Long, List<Integer>> genreIds = repository.findAllGenreIds();
 
-        List<Film> filmByUserIdLikeAfter = repository.findFilmByUserIdLike(1L);
-        assertThat(filmByUserIdLikeAfter).hasSize(1);
-        assertThat(filmByUserIdLikeAfter.getFirst().getId()).isEqualTo(1L);
+        assertThat(genreIds).containsOnlyKeys(1L);
+        assertThat(genreIds.get(1L)).containsExactly(2, 6);
     }
 
     @Test
-    void searchByTitle() {
-        List<Film> searched = repository.search("fi", SearchBy.TITLE);
-        assertThat(searched.size()).isEqualTo(1);
-        assertThat(searched.getFirst().getName()).contains("fi");
+    void findCommonFilms_orderedByRate() {
+        clearTables();
+        addUser(1);
+        addUser(2);
+        Film lowRated = repository.save(newFilm(LocalDate.of(2020, 5, 1)));
+        Film highRated = repository.save(newFilm(LocalDate.of(2020, 6, 1)));
+        Film notCommon = repository.save(newFilm(LocalDate.of(2020, 7, 1)));
+        repository.addLike(lowRated.getId(), 1, 3.0);
+        repository.addLike(lowRated.getId(), 2, 3.0);
+        repository.addLike(highRated.getId(), 1, 9.0);
+        repository.addLike(highRated.getId(), 2, 9.0);
+        repository.addLike(notCommon.getId(), 1, 10.0);
+
+        assertThat(repository.findCommonFilms(1, 2))
+                .extracting(Film::getId)
+                .containsExactly(highRated.getId(), lowRated.getId());
     }
 
     @Test
-    void searchByDirector() {
-        List<Film> searched = repository.search("Tar", SearchBy.DIRECTOR);
-        assertThat(searched.size()).isEqualTo(1);
-        assertThat(searched.getFirst().getId()).isEqualTo(1);
+    void getPopularFilms() {
+        clearTables();
+        addUser(1);
+        addUser(2);
+        Film drama2020 = repository.save(newFilm(LocalDate.of(2020, 5, 1)));
+        Film drama2021 = repository.save(newFilm(LocalDate.of(2021, 5, 1)));
+        Film comedy2020 = repository.save(newFilm(LocalDate.of(2020, 7, 1)));
+        repository.updateGenres(List.of(new Genre(2, null)), drama2020.getId());
+        repository.updateGenres(List.of(new Genre(2, null)), drama2021.getId());
+        repository.updateGenres(List.of(new Genre(1, null)), comedy2020.getId());
+        repository.addLike(drama2020.getId(), 1, 5.0);
+        repository.addLike(drama2021.getId(), 1, 9.0);
+        repository.addLike(comedy2020.getId(), 1, 7.0);
+        repository.addLike(comedy2020.getId(), 2, 8.0);
+
+        assertThat(repository.getPopularFilms(null, null, 2)).extracting(Film::getId)
+                .containsExactly(drama2021.getId(), comedy2020.getId());
+        assertThat(repository.getPopularFilms(2, null, 10)).extracting(Film::getId)
+                .containsExactly(drama2021.getId(), drama2020.getId());
+        assertThat(repository.getPopularFilms(null, 2020, 10)).extracting(Film::getId)
+                .containsExactly(comedy2020.getId(), drama2020.getId());
+        assertThat(repository.getPopularFilms(2, 2020, 10)).extracting(Film::getId)
+                .containsExactly(drama2020.getId());
     }
 
     @BeforeEach
@@ -247,6 +419,42 @@ class FilmRepositoryTest {
         jdbc.update("DELETE FROM DIRECTORS");
     }
 
+    private FilmService filmService(JdbcTemplate countingJdbc) {
+        FilmRepository filmRepository = new FilmRepository(countingJdbc, new FilmRowMapper());
+        ReferenceDataCache referenceData = new ReferenceDataCache(new MpaRepository(jdbc, new MpaRowMapper()),
+                new GenreRepository(jdbc, new GenreRowMapper()), new DirectorRepository(jdbc, new DirectorRowMapper()));
+        referenceData.rebuild();
+        FilmLikeWriter likeWriter = new FilmLikeWriter(filmRepository,
+                mock(PopularFilmsLeaderboard.class), mock(LikeMatrix.class));
+        return new FilmService(filmRepository, mock(ReviewRepository.class), mock(EventService.class),
+                mock(ValidationService.class), mock(PopularFilmsLeaderboard.class), mock(FilmSearchIndex.class),
+                mock(LikeMatrix.class), mock(RecommendationJobService.class), mock(EntityIdIndex.class),
+                referenceData, mock(FilmDtoCache.class), likeWriter, mock(Validator.class));
+    }
+
+    private void addFilm(long id) {
+        jdbc.update("INSERT INTO PUBLIC.FILMS (FILM_ID,NAME,DESCRIPTION,RELEASE_DATE,DURATION,MPA_ID)\n" +
+                    "\tVALUES (?,'film','desc','2020-01-01',121,1)", id);
+    }
+
+    private Film newFilm(LocalDate releaseDate) {
+        return new Film()
+                .setName("popular")
+                .setDescription("description")
+                .setReleaseDate(releaseDate)
+                .setDuration(100)
+                .setMpa(1);
+    }
+
+    private void addUser(long id) {
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tVALUES (?,?,?,'name','2000-01-01')", id, "email" + id, "login" + id);
+    }
+
+    private Map<String, Object> ratingStats(long filmId) {
+        return jdbc.queryForMap("SELECT MARK_COUNT, LIKE_COUNT FROM FILM_RATING_STATS WHERE FILM_ID = ?", filmId);
+    }
+
     private void addLike(long filmId, long userId) {
         jdbc.update("INSERT INTO FILM_LIKES (FILM_ID, USER_ID) VALUES (?,?)", filmId, userId);
     }
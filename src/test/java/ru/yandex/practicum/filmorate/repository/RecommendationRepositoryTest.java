@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.RecommendationJob;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({RecommendationRepository.class})
+class RecommendationRepositoryTest {
+
+    private static final LocalDateTime COMPUTED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final RecommendationRepository repository;
+    private final JdbcTemplate jdbc;
+
+    @Test
+    void findFreshRecommendations_whenNoLikesAfterSnapshot() {
+        repository.saveRecommendations(Map.of(1L, List.of(3L, 2L), 2L, List.of()), COMPUTED_AT);
+        addLikeEvent(COMPUTED_AT.minusMinutes(1));
+
+        assertThat(repository.findFreshRecommendations(1L)).hasValue(List.of(3L, 2L));
+        assertThat(repository.findFreshRecommendations(2L)).hasValue(List.of());
+    }
+
+    @Test
+    void findFreshRecommendations_whenLikedAfterSnapshot() {
+        repository.saveRecommendations(Map.of(1L, List.of(3L)), COMPUTED_AT);
+        addLikeEvent(COMPUTED_AT.plusMinutes(1));
+
+        assertThat(repository.findFreshRecommendations(1L)).isEmpty();
+    }
+
+    @Test
+    void findFreshRecommendations_whenNotComputed() {
+        assertThat(repository.findFreshRecommendations(1L)).isEmpty();
+    }
+
+    @Test
+    void saveRecommendations_overwritesSnapshot() {
+        repository.saveRecommendations(Map.of(1L, List.of(3L)), COMPUTED_AT);
+        repository.saveRecommendations(Map.of(1L, List.of(4L, 5L)), COMPUTED_AT.plusDays(1));
+
+        assertThat(repository.findFreshRecommendations(1L)).hasValue(List.of(4L, 5L));
+    }
+
+    @Test
+    void startJob_and_saveProgress() {
+        RecommendationJob job = repository.startJob(COMPUTED_AT);
+        repository.saveProgress(job.setLastUserId(2L).setProcessedUsers(2L));
+
+        assertThat(repository.findLastJob()).hasValueSatisfying(last -> {
+            assertThat(last.getId()).isEqualTo(job.getId());
+            assertThat(last.getLastUserId()).isEqualTo(2L);
+            assertThat(last.getFinishedAt()).isNull();
+        });
+
+        repository.saveProgress(job.setFinishedAt(COMPUTED_AT.plusHours(1)));
+
+        assertThat(repository.findLastJob()).hasValueSatisfying(last ->
+                assertThat(last.getFinishedAt()).isEqualTo(COMPUTED_AT.plusHours(1)));
+    }
+
+    @BeforeEach
+    void initDb() {
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tVALUES (1,'email','login','name','2000-01-01')");
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tVALUES (2,'email2','login2','name','2000-01-01')");
+    }
+
+    @AfterEach
+    void clearTables() {
+        jdbc.update("DELETE FROM USER_RECOMMENDATIONS");
+        jdbc.update("DELETE FROM RECOMMENDATION_JOBS");
+        jdbc.update("DELETE FROM EVENTS");
+        jdbc.update("DELETE FROM USERS");
+    }
+
+    private void addLikeEvent(LocalDateTime createdAt) {
+        jdbc.update("INSERT INTO EVENTS (USER_ID, EVENT_TYPE, OPERATION, ENTITY_ID, CREATED_AT) " +
+                    "VALUES (1, 'LIKE', 'ADD', 1, ?)", createdAt);
+    }
+}
@@ -9,13 +9,22 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.ReviewRowMapper;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.utils.PageCursor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -264,20 +273,97 @@ class ReviewRepositoryTest {
     }
 
     @Test
-    void calculateUsefulByReviewId() {
-        int useful1 = repository.calculateUsefulByReviewId(1);
-        assertThat(useful1).isEqualTo(0);
+    void useful_followsLikesAndDislikes() {
+        assertThat(usefulOfReview(1)).isEqualTo(0);
 
-        addDislike(1);
+        repository.addReviewDislike(1, 1);
+        assertThat(usefulOfReview(1)).isEqualTo(-1);
 
-        int useful2 = repository.calculateUsefulByReviewId(1);
-        assertThat(useful2).isEqualTo(-1);
+        repository.addReviewLike(1, 1);
+        assertThat(usefulOfReview(1)).isEqualTo(1);
 
-        jdbc.update("DELETE FROM REVIEW_LIKES");
-        addLike(1);
+        repository.addReviewLike(1, 1);
+        assertThat(usefulOfReview(1)).isEqualTo(1);
+
+        repository.deleteLikeDislikeRow(1, 1);
+        assertThat(usefulOfReview(1)).isEqualTo(0);
+
+        repository.addReviewDislike(1, 1);
+        repository.deleteDislikeRow(1, 1);
+        assertThat(usefulOfReview(1)).isEqualTo(0);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void votes_keepUsefulExactUnderConcurrentVoters() throws Exception {
+        int voters = 64;
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tSELECT X, 'email' || X, 'login' || X, 'name', '2000-01-01' FROM SYSTEM_RANGE(2, ?)", voters + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(voters);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (long userId = 2; userId <= voters + 1; userId++) {
+            long voter = userId;
+            results.add(executor.submit(() -> {
+                start.await();
+                Random random = new Random(voter);
+                for (int i = 0; i < 200; i++) {
+                    switch (random.nextInt(4)) {
+                        case 0 -> repository.addReviewLike(1, voter);
+                        case 1 -> repository.addReviewDislike(1, voter);
+                        case 2 -> repository.deleteLikeDislikeRow(1, voter);
+                        default -> repository.deleteDislikeRow(1, voter);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        Integer votesSum = jdbc.queryForObject("""
+                SELECT COALESCE(SUM(CASE WHEN IS_DISLIKE THEN -1 ELSE 1 END), 0)
+                FROM REVIEW_LIKES WHERE REVIEW_ID = 1""", Integer.class);
+        assertThat(usefulOfReview(1)).isEqualTo(votesSum);
+    }
+
+    @Test
+    void getReviewsByFilmId_ordersByUsefulBeforeLimit() {
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tVALUES (2,'email2','login2','name','2000-01-01')");
+        jdbc.update("INSERT INTO PUBLIC.REVIEWS (REVIEW_ID,CONTENT,IS_POSITIVE,USER_ID,FILM_ID)\n" +
+                    "\tVALUES (3,'content',true,2,1)");
+        repository.addReviewLike(3, 1);
 
-        int useful3 = repository.calculateUsefulByReviewId(1);
-        assertThat(useful3).isEqualTo(1);
+        assertThat(repository.getReviewsByFilmId(1, 1)).extracting(Review::getId).containsExactly(3L);
+    }
+
+    @Test
+    void findPage_ordersByUsefulThenId() {
+        addDislike(1L);
+
+        List<Review> firstPage = repository.findPage(null, null, 1);
+        assertThat(firstPage).extracting(Review::getId).containsExactly(2L);
+
+        List<Review> secondPage = repository.findPage(null, PageCursor.of(0, 2L), 1);
+        assertThat(secondPage).extracting(Review::getId).containsExactly(1L);
+
+        assertThat(repository.findPage(null, PageCursor.of(-1, 1L), 1)).isEmpty();
+        assertThat(repository.findPage(1L, null, 10)).extracting(Review::getId).containsExactly(1L);
+    }
+
+    @Test
+    void rebuildUseful() {
+        addLike(1L);
+        jdbc.update("UPDATE REVIEWS SET USEFUL = 7");
+
+        assertThat(repository.rebuildUseful()).isEqualTo(2);
+
+        assertThat(usefulOfReview(1)).isEqualTo(1);
+        assertThat(usefulOfReview(2)).isEqualTo(0);
     }
 
     @BeforeEach
@@ -304,9 +390,15 @@ class ReviewRepositoryTest {
 
     private void addLike(long userId) {
         jdbc.update("INSERT INTO REVIEW_LIKES (REVIEW_ID, USER_ID, IS_DISLIKE) VALUES (1,?,FALSE)", userId);
+        jdbc.update("UPDATE REVIEWS SET USEFUL = USEFUL + 1 WHERE REVIEW_ID = 1");
     }
 
     private void addDislike(long userId) {
         jdbc.update("INSERT INTO REVIEW_LIKES (REVIEW_ID, USER_ID, IS_DISLIKE) VALUES (1,?,TRUE)", userId);
+        jdbc.update("UPDATE REVIEWS SET USEFUL = USEFUL - 1 WHERE REVIEW_ID = 1");
+    }
+
+    private int usefulOfReview(long id) {
+        return repository.findById(id).orElseThrow().getUseful();
     }
 }
\ No newline at end of file
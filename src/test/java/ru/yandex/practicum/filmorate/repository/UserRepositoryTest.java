@@ -63,6 +63,19 @@ class UserRepositoryTest {
         assertThat(dbUser.get("BIRTHDAY")).isEqualTo(java.sql.Date.valueOf("2000-01-01"));
     }
 
+    @Test
+    void saveAll_setsGeneratedIds() {
+        clearTables();
+        List<User> users = repository.saveAll(List.of(
+                new User(null, "a@a.a", "batchA", "A", LocalDate.of(2000, 1, 1)),
+                new User(null, "b@b.b", "batchB", "B", LocalDate.of(2000, 1, 2))));
+
+        assertThat(users).extracting(User::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(repository.findAllByIds(users.stream().map(User::getId).toList()))
+                .extracting(User::getLogin)
+                .containsExactly("batchA", "batchB");
+    }
+
     @Test
     void deleteById_whenUserExists() {
         boolean deleted = repository.deleteById(1L);
@@ -136,18 +149,6 @@ class UserRepositoryTest {
         assertThat(byId).isEmpty();
     }
 
-    @Test
-    void existById_whenTrue() {
-        boolean existById = repository.existById(1);
-        assertThat(existById).isTrue();
-    }
-
-    @Test
-    void existById_whenFalse() {
-        boolean existById = repository.existById(6);
-        assertThat(existById).isFalse();
-    }
-
     @Test
     void addFriendshipRow_whenFriendshipIsSet() {
         addFriendshipRow(1, 2);
@@ -176,19 +177,6 @@ class UserRepositoryTest {
         assertThat(deleteFriendshipRow).isFalse();
     }
 
-    @Test
-    void getFriendsByUserId__whenFriendshipIsNotSet() {
-        addFriendshipRow(1, 2);
-
-        List<User> friendsByUserId = repository.getFriendsByUserId(1L);
-        assertThat(friendsByUserId).hasSize(1);
-        assertThat(friendsByUserId.getFirst()).hasFieldOrPropertyWithValue("id", 2L)
-                .hasFieldOrPropertyWithValue("name", "name2")
-                .hasFieldOrPropertyWithValue("login", "login2")
-                .hasFieldOrPropertyWithValue("email", "email2")
-                .hasFieldOrPropertyWithValue("birthday", LocalDate.of(2000, 1, 2));
-    }
-
     @BeforeEach
     void initDb() {
         jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.yandex.practicum.filmorate.dto.BatchResult;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.utils.JsonStreamReader;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchImportTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final List<List<String>> savedChunks = new ArrayList<>();
+    private long nextId;
+
+    @BeforeEach
+    void init() {
+        savedChunks.clear();
+        nextId = 1;
+    }
+
+    @Test
+    void run_reportsItemErrorsAndSavesTheRest() {
+        BatchResult result = batchImport().run(items(
+                user("first"),
+                null,
+                user("first").setEmail("not an email"),
+                user("rejected"),
+                user("second")), 10);
+
+        assertThat(result.created()).isEqualTo(2);
+        assertThat(result.ids()).containsExactly(1L, null, null, null, 2L);
+        assertThat(result.errors()).containsExactly(
+                new BatchResult.ItemError(1, "bad json"),
+                new BatchResult.ItemError(2, "email: must be a well-formed email address"),
+                new BatchResult.ItemError(3, "login is rejected"));
+        assertThat(savedChunks).containsExactly(List.of("first", "second"));
+    }
+
+    @Test
+    void run_savesOneByOneWhenChunkBreaksConstraint() {
+        BatchResult result = batchImport().run(items(
+                user("first"),
+                user("taken"),
+                user("second"),
+                user("third")), 3);
+
+        assertThat(result.created()).isEqualTo(3);
+        assertThat(result.ids()).containsExactly(1L, null, 2L, 3L);
+        assertThat(result.errors()).containsExactly(new BatchResult.ItemError(1, "conflict"));
+        assertThat(savedChunks).containsExactly(List.of("first"), List.of("second"), List.of("third"));
+    }
+
+    private BatchImport<User> batchImport() {
+        return new BatchImport<>(validator, user -> {
+            if (user.getLogin().equals("rejected")) {
+                throw new ValidationException("login is rejected");
+            }
+        }, this::save, "conflict");
+    }
+
+    private List<Long> save(List<User> users) {
+        List<String> logins = users.stream().map(User::getLogin).toList();
+        if (logins.contains("taken")) {
+            throw new DataIntegrityViolationException("unique login");
+        }
+        savedChunks.add(logins);
+        return users.stream().map(user -> nextId++).toList();
+    }
+
+    private static Iterator<JsonStreamReader.Item<User>> items(User... users) {
+        return IntStream.range(0, users.length)
+                .mapToObj(i -> users[i] == null
+                        ? new JsonStreamReader.Item<User>(i, null, "bad json")
+                        : new JsonStreamReader.Item<>(i, users[i], null))
+                .iterator();
+    }
+
+    private static User user(String login) {
+        return new User(null, login + "@mail.ru", login, login, LocalDate.of(2000, 1, 1));
+    }
+}
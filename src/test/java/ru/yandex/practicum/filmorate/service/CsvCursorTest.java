@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvCursorTest {
+
+    @Test
+    void readsFieldsOfEveryLine() {
+        CsvCursor cursor = cursor("1,20,7.25\r\n\n-3,4,\n5,6,TRUE,\"Nice, \"\"really\"\" — фильм\"\n7,8,0,plain text");
+
+        assertThat(cursor.nextLine()).isTrue();
+        assertThat(cursor.nextLong()).isEqualTo(1);
+        assertThat(cursor.nextLong()).isEqualTo(20);
+        assertThat(cursor.nextDouble()).isEqualTo(7.25);
+        cursor.endLine();
+
+        assertThat(cursor.nextLine()).isTrue();
+        assertThat(cursor.nextLong()).isEqualTo(-3);
+        assertThat(cursor.nextLong()).isEqualTo(4);
+        assertThat(cursor.nextDouble()).isNaN();
+        cursor.endLine();
+
+        assertThat(cursor.nextLine()).isTrue();
+        assertThat(cursor.nextLong()).isEqualTo(5);
+        assertThat(cursor.nextLong()).isEqualTo(6);
+        assertThat(cursor.nextBoolean()).isTrue();
+        assertThat(cursor.nextText()).isEqualTo("Nice, \"really\" — фильм");
+        cursor.endLine();
+
+        assertThat(cursor.nextLine()).isTrue();
+        assertThat(cursor.nextLong()).isEqualTo(7);
+        assertThat(cursor.nextLong()).isEqualTo(8);
+        assertThat(cursor.nextBoolean()).isFalse();
+        assertThat(cursor.nextText()).isEqualTo("plain text");
+        cursor.endLine();
+
+        assertThat(cursor.nextLine()).isFalse();
+    }
+
+    @Test
+    void skipsMalformedLine() {
+        CsvCursor cursor = cursor("film_id,user_id\n1x,2\n1,2,3,4\n9,10\n");
+
+        assertThat(cursor.nextLine()).isTrue();
+        assertThat(cursor.atNumber()).isFalse();
+        cursor.skipLine();
+
+        assertThat(cursor.nextLine()).isTrue();
+        assertThatThrownBy(cursor::nextLong).isInstanceOf(IllegalArgumentException.class);
+        cursor.skipLine();
+
+        assertThat(cursor.nextLine()).isTrue();
+        cursor.nextLong();
+        cursor.nextLong();
+        cursor.nextLong();
+        assertThatThrownBy(cursor::endLine).isInstanceOf(IllegalArgumentException.class);
+        cursor.skipLine();
+
+        assertThat(cursor.nextLine()).isTrue();
+        assertThat(cursor.nextLong()).isEqualTo(9);
+        assertThat(cursor.nextLong()).isEqualTo(10);
+        cursor.endLine();
+        assertThat(cursor.nextLine()).isFalse();
+    }
+
+    private static CsvCursor cursor(String csv) {
+        return new CsvCursor(ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+}
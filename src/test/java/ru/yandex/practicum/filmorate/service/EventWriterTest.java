@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.repository.EventRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventWriterTest {
+
+    private EventRepository eventRepository;
+    private EventWriter writer;
+    private final List<Event> written = new ArrayList<>();
+
+    @BeforeEach
+    void initWriter() {
+        eventRepository = mock(EventRepository.class);
+        writer = new EventWriter(eventRepository);
+        ReflectionTestUtils.setField(writer, "capacity", 10);
+        ReflectionTestUtils.setField(writer, "flushSize", 10);
+        // events are queued, but only written by explicit flushes
+        ReflectionTestUtils.setField(writer, "running", true);
+        writer.onWritten(written::addAll);
+    }
+
+    @Test
+    void flush_keepsFailedEventsAndDropsIntegrityViolations() {
+        Event deletedUser = event(1);
+        Event failed = event(2);
+        Event ok = event(3);
+        doThrow(new QueryTimeoutException("timeout")).when(eventRepository).createAll(anyList());
+        doThrow(new DataIntegrityViolationException("fk")).when(eventRepository).create(deletedUser);
+        doThrow(new QueryTimeoutException("timeout")).when(eventRepository).create(failed);
+        when(eventRepository.create(ok)).thenReturn(ok);
+        writer.publish(deletedUser);
+        writer.publish(failed);
+        writer.publish(ok);
+
+        assertThat(writer.flush()).isFalse();
+
+        assertThat(written).containsExactly(ok);
+        assertThat(writer.getStats()).isEqualTo(new EventWriter.Stats(1, 1, 1));
+
+        reset(eventRepository);
+        assertThat(writer.flush()).isTrue();
+
+        verify(eventRepository, times(1)).createAll(List.of(failed));
+        assertThat(written).containsExactly(ok, failed);
+        assertThat(writer.getStats()).isEqualTo(new EventWriter.Stats(0, 0, 1));
+    }
+
+    @Test
+    void flushFor_retriesFailedEventsOfTheUser() {
+        Event event = event(1);
+        doThrow(new QueryTimeoutException("timeout")).when(eventRepository).createAll(anyList());
+        doThrow(new QueryTimeoutException("timeout")).when(eventRepository).create(event);
+        writer.publish(event);
+        writer.flush();
+
+        reset(eventRepository);
+        writer.flushFor(1);
+
+        verify(eventRepository).createAll(List.of(event));
+        assertThat(written).containsExactly(event);
+    }
+
+    private static Event event(long userId) {
+        return Event.builder()
+                .userId(userId)
+                .eventType("LIKE")
+                .operation("ADD")
+                .entityId(userId * 10)
+                .timestamp(userId)
+                .build();
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dto.EventDTO;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Blocks writes to a subscriber by holding its emitter's lock, which every send takes.
+ */
+class FeedStreamServiceTest {
+    private static final int BUFFER_SIZE = 4;
+    private static final long AWAIT_MS = 5000;
+
+    private final EventService eventService = mock(EventService.class);
+    private final EventWriter eventWriter = mock(EventWriter.class);
+    private FeedStreamService service;
+    private Consumer<List<Event>> published;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void initService() {
+        service = new FeedStreamService(eventService, eventWriter, mock(ValidationService.class));
+        ReflectionTestUtils.setField(service, "bufferSize", BUFFER_SIZE);
+        ReflectionTestUtils.setField(service, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(service, "deliveryThreads", 1);
+        ReflectionTestUtils.setField(service, "sendTimeoutMs", 0L);
+        ReflectionTestUtils.setField(service, "replayLimit", 1000);
+        service.init();
+        ArgumentCaptor<Consumer<List<Event>>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(eventWriter).onWritten(listener.capture());
+        published = listener.getValue();
+        when(eventService.convertToDto(any())).thenAnswer(invocation -> {
+            Event event = invocation.getArgument(0);
+            return new EventDTO(1L, event.getUserId(), null, null, event.getEventId(), 1L);
+        });
+    }
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void offer_disconnectsSubscriberWhoseBufferOverflows() throws Exception {
+        SseEmitter slow = service.subscribe(1, null);
+        service.subscribe(2, null);
+
+        synchronized (slow) {
+            // the first event may be taken off the buffer by a drain blocked in its write
+            published.accept(events(1, BUFFER_SIZE + 2));
+
+            assertThat(service.getSubscriberCount()).isEqualTo(1);
+        }
+        await(() -> isComplete(slow));
+    }
+
+    @Test
+    void disconnectStuckSubscribers_replacesBlockedDeliveryThread() throws Exception {
+        ThreadPoolExecutor delivery = (ThreadPoolExecutor) ReflectionTestUtils.getField(service, "delivery");
+        SseEmitter stuck = service.subscribe(1, null);
+
+        synchronized (stuck) {
+            published.accept(events(1, 1));
+            await(() -> {
+                service.disconnectStuckSubscribers();
+                return service.getSubscriberCount() == 0;
+            });
+            assertThat(delivery.getCorePoolSize()).isEqualTo(2);
+
+            // the only delivery thread is blocked, the added one serves the new subscriber
+            service.subscribe(2, 5L);
+            verify(eventService, timeout(AWAIT_MS)).getUserFeed(2L, 5L, 1000);
+        }
+
+        await(() -> delivery.getCorePoolSize() == 1 && delivery.getMaximumPoolSize() == 1);
+        await(() -> isComplete(stuck));
+    }
+
+    private static List<Event> events(long userId, int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> Event.builder().eventId(id).userId(userId).build())
+                .toList();
+    }
+
+    private static boolean isComplete(SseEmitter emitter) {
+        synchronized (emitter) {
+            return (boolean) ReflectionTestUtils.getField(emitter, "complete");
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
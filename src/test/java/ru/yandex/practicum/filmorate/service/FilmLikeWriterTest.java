@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.mapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.repository.FilmRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs the write-behind buffer outside of a test transaction, as the writer thread does, so a failed
+ * batch is rolled back before its likes are retried one by one.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmRepository.class, FilmRowMapper.class, GenreRowMapper.class, DirectorRowMapper.class})
+class FilmLikeWriterTest {
+
+    private final FilmRepository repository;
+    private final JdbcTemplate jdbc;
+
+    @TempDir
+    private Path journalDirectory;
+
+    private final PopularFilmsLeaderboard leaderboard = mock(PopularFilmsLeaderboard.class);
+    private final LikeMatrix likeMatrix = mock(LikeMatrix.class);
+    private final List<FilmLikeWriter> started = new ArrayList<>();
+    private final List<FilmLikeWriter> buffering = new ArrayList<>();
+    private long filmId;
+    private long otherFilmId;
+
+    @BeforeEach
+    void initDb() {
+        addUser(1);
+        addUser(2);
+        filmId = repository.save(newFilm()).getId();
+        otherFilmId = repository.save(newFilm()).getId();
+    }
+
+    @AfterEach
+    void stopWriters() throws Exception {
+        for (FilmLikeWriter writer : started) {
+            writer.stop();
+        }
+        for (FilmLikeWriter writer : buffering) {
+            journal(writer).close();
+        }
+        jdbc.update("DELETE FROM FILM_LIKES WHERE FILM_ID IN (?,?)", filmId, otherFilmId);
+        jdbc.update("DELETE FROM FILMS WHERE FILM_ID IN (?,?)", filmId, otherFilmId);
+        jdbc.update("DELETE FROM USERS WHERE USER_ID IN (1,2)");
+    }
+
+    @Test
+    void rateByFilmId_includesBufferedLikes() {
+        FilmLikeWriter writer = bufferingWriter(repository);
+        writer.addLike(filmId, 1, 8.0);
+        writer.addLike(filmId, 2, 6.0);
+
+        assertThat(storedLikes(filmId)).isZero();
+        assertThat(writer.rateByFilmIds(List.of(filmId, otherFilmId))).containsEntry(filmId, 7.0);
+
+        writer.flush();
+
+        assertThat(storedLikes(filmId)).isEqualTo(2);
+        assertThat(repository.rateByFilmId(filmId)).isEqualTo(7.0);
+        assertThat(writer.rateByFilmId(filmId)).isEqualTo(7.0);
+        assertThat(pendingLikes(writer)).isZero();
+    }
+
+    @Test
+    void removeLike_coalescesWithBufferedLike() {
+        FilmLikeWriter writer = bufferingWriter(repository);
+        writer.addLike(filmId, 1, 8.0);
+
+        assertThat(writer.removeLike(filmId, 1)).isTrue();
+        assertThat(writer.rateByFilmId(filmId)).isNull();
+
+        writer.flush();
+
+        assertThat(storedLikes(filmId)).isZero();
+        assertThat(jdbc.queryForObject("SELECT LIKE_COUNT FROM FILM_RATING_STATS WHERE FILM_ID = ?",
+                Integer.class, filmId)).isZero();
+        assertThat(pendingLikes(writer)).isZero();
+    }
+
+    @Test
+    void flush_keepsLikeChangedWhileItsBatchIsWritten() {
+        FilmRepository spied = spy(AopTestUtils.<FilmRepository>getUltimateTargetObject(repository));
+        FilmLikeWriter writer = bufferingWriter(spied);
+        AtomicInteger writes = new AtomicInteger();
+        doAnswer(invocation -> {
+            repository.applyLikes(invocation.getArgument(0));
+            if (writes.incrementAndGet() == 1) {
+                writer.addLike(filmId, 1, 2.0);
+            }
+            return null;
+        }).when(spied).applyLikes(anyList());
+        writer.addLike(filmId, 1, 8.0);
+
+        writer.flush();
+
+        assertThat(storedMark(filmId, 1)).isEqualTo(8.0);
+        assertThat(writer.rateByFilmId(filmId)).isEqualTo(2.0);
+        assertThat(pendingLikes(writer)).isEqualTo(1);
+
+        writer.flush();
+
+        assertThat(storedMark(filmId, 1)).isEqualTo(2.0);
+        assertThat(repository.rateByFilmId(filmId)).isEqualTo(2.0);
+        assertThat(pendingLikes(writer)).isZero();
+    }
+
+    @Test
+    void flush_dropsLikesOfDeletedFilm() {
+        FilmLikeWriter writer = bufferingWriter(repository);
+        writer.addLike(filmId, 1, 8.0);
+        writer.addLike(otherFilmId, 1, 5.0);
+        jdbc.update("DELETE FROM FILMS WHERE FILM_ID = ?", filmId);
+
+        writer.flush();
+
+        assertThat(storedMark(otherFilmId, 1)).isEqualTo(5.0);
+        assertThat(pendingLikes(writer)).isZero();
+        assertThat(writer.rateByFilmIds(List.of(filmId, otherFilmId))).isEqualTo(Map.of(otherFilmId, 5.0));
+    }
+
+    @Test
+    void start_writesLikesLeftInJournal() throws Exception {
+        FilmLikeWriter crashed = bufferingWriter(repository);
+        crashed.addLike(filmId, 1, 8.0);
+        crashed.addLike(filmId, 2, null);
+        crashed.removeLike(filmId, 2);
+        crashed.addLike(otherFilmId, 2, 4.0);
+        // the process goes away without flushing
+        buffering.remove(crashed);
+        journal(crashed).close();
+
+        FilmLikeWriter restarted = writer(repository);
+        restarted.start();
+        started.add(restarted);
+
+        assertThat(storedMark(filmId, 1)).isEqualTo(8.0);
+        assertThat(storedLikes(filmId)).isEqualTo(1);
+        assertThat(storedMark(otherFilmId, 2)).isEqualTo(4.0);
+        verify(likeMatrix).addLike(1, filmId);
+        verify(likeMatrix).removeLike(2, filmId);
+        verify(likeMatrix).addLike(2, otherFilmId);
+        verify(leaderboard).updateRates(Map.of(filmId, 8.0, otherFilmId, 4.0));
+    }
+
+    private FilmLikeWriter writer(FilmRepository filmRepository) {
+        FilmLikeWriter writer = new FilmLikeWriter(filmRepository, leaderboard, likeMatrix);
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        ReflectionTestUtils.setField(writer, "flushSize", 1000);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(writer, "journalDirectory", journalDirectory);
+        return writer;
+    }
+
+    /**
+     * Buffers likes without the writer thread, so they are written only by explicit flushes.
+     */
+    private FilmLikeWriter bufferingWriter(FilmRepository filmRepository) {
+        FilmLikeWriter writer = writer(filmRepository);
+        try {
+            ReflectionTestUtils.setField(writer, "journal", LikeJournal.open(journalDirectory));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ReflectionTestUtils.setField(writer, "running", true);
+        buffering.add(writer);
+        return writer;
+    }
+
+    private static LikeJournal journal(FilmLikeWriter writer) {
+        return (LikeJournal) ReflectionTestUtils.getField(writer, "journal");
+    }
+
+    private static int pendingLikes(FilmLikeWriter writer) {
+        return ((AtomicInteger) ReflectionTestUtils.getField(writer, "pending")).get();
+    }
+
+    private int storedLikes(long film) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM FILM_LIKES WHERE FILM_ID = ?", Integer.class, film);
+    }
+
+    private Double storedMark(long film, long userId) {
+        return repository.findLike(film, userId).mark();
+    }
+
+    private void addUser(long id) {
+        jdbc.update("INSERT INTO PUBLIC.USERS (USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY)\n" +
+                    "\tVALUES (?,?,?,'name','2000-01-01')", id, "email" + id, "login" + id);
+    }
+
+    private static Film newFilm() {
+        return new Film()
+                .setName("film")
+                .setDescription("description")
+                .setReleaseDate(LocalDate.of(2000, 1, 1))
+                .setDuration(100)
+                .setMpa(1);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikeJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void readRolled_keepsLastStatePerLike() throws IOException {
+        LikeJournal journal = LikeJournal.open(directory);
+        journal.sync(journal.append(FilmLike.of(1, 1, 5.0)));
+        journal.append(FilmLike.of(1, 2, null));
+        journal.roll();
+        journal.sync(journal.append(FilmLike.absent(1, 1)));
+        journal.close();
+
+        LikeJournal reopened = LikeJournal.open(directory);
+
+        assertThat(reopened.readRolled()).containsExactlyInAnyOrder(FilmLike.absent(1, 1), FilmLike.of(1, 2, null));
+        reopened.deleteRolled();
+        reopened.close();
+        assertThat(journalFiles()).isZero();
+    }
+
+    @Test
+    void readRolled_stopsAtTornRecord() throws IOException {
+        LikeJournal journal = LikeJournal.open(directory);
+        journal.append(FilmLike.of(1, 1, 5.0));
+        journal.sync(journal.append(FilmLike.of(2, 1, 7.0)));
+        journal.close();
+        try (Stream<Path> files = Files.list(directory);
+             FileChannel channel = FileChannel.open(files.findFirst().orElseThrow(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThat(LikeJournal.open(directory).readRolled()).containsExactly(FilmLike.of(1, 1, 5.0));
+    }
+
+    private long journalFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}